@@ -0,0 +1,66 @@
+package com.example.grapgame.starterproject
+
+import android.os.Debug
+import android.os.SystemClock
+import android.support.test.runner.AndroidJUnit4
+import android.util.Log
+import com.example.grapgame.starterproject.models.FeedModel
+import com.example.grapgame.starterproject.services.core.RetrofitClient
+import com.google.gson.reflect.TypeToken
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.ByteArrayInputStream
+import java.io.InputStreamReader
+
+/**
+ * Compares reading a response body as String and parsing it afterwards, as the scalars
+ * converter did, against decoding the body stream straight into models, as the Gson
+ * converter does. Timings and allocations are written to logcat under the `Converter` tag.
+ */
+@RunWith(AndroidJUnit4::class)
+class ConverterBenchmark {
+
+    private val type = object : TypeToken<List<FeedModel>>() {}.type
+    private val body = json().toByteArray(Charsets.UTF_8)
+
+    @Test
+    fun stringThenParseAgainstDirectDecoding() {
+        val gson = RetrofitClient.getGson()
+
+        repeat(ROUNDS) { round ->
+            val parsed = measure("string-then-parse", round) {
+                val text = String(body, Charsets.UTF_8)
+                gson.fromJson<List<FeedModel>>(text, type)
+            }
+            val decoded = measure("direct", round) {
+                InputStreamReader(ByteArrayInputStream(body), Charsets.UTF_8).use {
+                    gson.getAdapter(TypeToken.get(type)).fromJson(it) as List<*>
+                }
+            }
+            assertEquals(ITEMS, parsed.size)
+            assertEquals(ITEMS, decoded.size)
+        }
+    }
+
+    private fun <R> measure(name: String, round: Int, block: () -> R): R {
+        Debug.startAllocCounting()
+        val start = SystemClock.elapsedRealtime()
+        val value = block()
+        val time = SystemClock.elapsedRealtime() - start
+        Debug.stopAllocCounting()
+        Log.i(TAG, "$name round[$round] ${time}ms allocated[${Debug.getThreadAllocSize()}]")
+        Debug.resetThreadAllocSize()
+        return value
+    }
+
+    private fun json(): String = (0 until ITEMS).joinToString(",", "[", "]") {
+        """{"key":"key$it","value":{"title":"item $it","score":${it * 0.5}}}"""
+    }
+
+    companion object {
+        private const val TAG = "Converter"
+        private const val ITEMS = 20000
+        private const val ROUNDS = 5
+    }
+}
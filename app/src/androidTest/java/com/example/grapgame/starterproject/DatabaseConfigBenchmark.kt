@@ -0,0 +1,76 @@
+package com.example.grapgame.starterproject
+
+import android.os.SystemClock
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import android.util.Log
+import com.example.grapgame.starterproject.db.core.DatabaseConfig
+import com.example.grapgame.starterproject.db.core.DatabaseConnection
+import com.example.grapgame.starterproject.db.core.SQLiteHelper
+import com.example.grapgame.starterproject.db.source.FeedSource
+import com.example.grapgame.starterproject.models.FeedModel
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Times bulk inserts, single row inserts (one transaction each) and full scans of the feed
+ * table for every [DatabaseConfig] preset, each on its own fresh database. Timings are
+ * written to logcat under the `DatabaseConfig` tag, run it on target devices before
+ * changing a preset.
+ */
+@RunWith(AndroidJUnit4::class)
+class DatabaseConfigBenchmark {
+
+    private val context = InstrumentationRegistry.getTargetContext()
+
+    private class PresetFeedSource(private val database: String) : FeedSource() {
+        override fun getDatabaseName() = database
+    }
+
+    @After
+    fun tearDown() {
+        PRESETS.keys.forEach { context.deleteDatabase(file(it)) }
+    }
+
+    @Test
+    fun presets() {
+        for ((name, config) in PRESETS) {
+            context.deleteDatabase(file(name))
+            DatabaseConnection.init(name, SQLiteHelper.newInstance(context, file(name), 1, config))
+            val source = PresetFeedSource(name)
+
+            val bulk = measure { source.insertOrUpdate((0 until ROWS).map { FeedModel("key$it", value(it)) }) }
+            val single = measure { (0 until SINGLE_ROWS).forEach { source.insertOrUpdate(FeedModel("single$it", value(it))) } }
+            var rows = 0
+            val scans = measure { repeat(SCANS) { rows = source.getAll().size } }
+
+            assertEquals(ROWS + SINGLE_ROWS, rows)
+            Log.i(TAG, "$name bulk[$ROWS] ${bulk}ms single[$SINGLE_ROWS] ${single}ms scan[$SCANS] ${scans}ms")
+        }
+    }
+
+    private inline fun measure(block: () -> Unit): Long {
+        val start = SystemClock.elapsedRealtime()
+        block()
+        return SystemClock.elapsedRealtime() - start
+    }
+
+    private fun value(row: Int) = "value of row $row ".repeat(20)
+
+    private fun file(name: String) = "config-$name.db"
+
+    companion object {
+        private const val TAG = "DatabaseConfig"
+        private const val ROWS = 5000
+        private const val SINGLE_ROWS = 200
+        private const val SCANS = 5
+
+        private val PRESETS = linkedMapOf(
+                "defaults" to DatabaseConfig.defaults(),
+                "readHeavy" to DatabaseConfig.readHeavy(),
+                "writeHeavy" to DatabaseConfig.writeHeavy(),
+                "lowMemory" to DatabaseConfig.lowMemory())
+    }
+}
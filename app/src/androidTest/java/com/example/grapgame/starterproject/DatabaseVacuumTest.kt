@@ -0,0 +1,58 @@
+package com.example.grapgame.starterproject
+
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import com.example.grapgame.starterproject.db.core.DatabaseConfig
+import com.example.grapgame.starterproject.db.core.DatabaseConnection
+import com.example.grapgame.starterproject.db.core.DatabaseManager
+import com.example.grapgame.starterproject.db.core.DatabaseVacuum
+import com.example.grapgame.starterproject.db.core.SQLiteHelper
+import com.example.grapgame.starterproject.db.source.FeedSource
+import com.example.grapgame.starterproject.models.FeedModel
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class DatabaseVacuumTest {
+
+    private val context = InstrumentationRegistry.getTargetContext()
+
+    private class TestFeedSource : FeedSource() {
+        override fun getDatabaseName() = DATABASE
+    }
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(DATABASE_FILE)
+        val config = DatabaseConfig.Builder().autoVacuum(DatabaseConfig.AutoVacuum.NONE).build()
+        DatabaseConnection.init(DATABASE, SQLiteHelper.newInstance(context, DATABASE_FILE, 1, config))
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(DATABASE_FILE)
+    }
+
+    @Test
+    fun compactSwitchesToIncrementalAutoVacuum() {
+        val source = TestFeedSource()
+        source.insertOrUpdate((0 until 500).map { FeedModel("key$it", "value of row $it") })
+        source.deleteAll()
+        assertEquals(DatabaseVacuum.SpaceInfo.AUTO_VACUUM_NONE.toLong(), autoVacuum())
+
+        val compaction = DatabaseVacuum.compact(DATABASE)
+
+        assertEquals(DatabaseVacuum.SpaceInfo.AUTO_VACUUM_INCREMENTAL, compaction.after.autoVacuum)
+        assertEquals(DatabaseVacuum.SpaceInfo.AUTO_VACUUM_INCREMENTAL.toLong(), autoVacuum())
+    }
+
+    private fun autoVacuum() = DatabaseManager.longForQuery(DATABASE, "PRAGMA auto_vacuum")
+
+    companion object {
+        private const val DATABASE = "vacuum-test"
+        private const val DATABASE_FILE = "vacuum-test.db"
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.grapgame.starterproject
+
+import android.os.Debug
+import android.support.test.runner.AndroidJUnit4
+import android.util.Log
+import com.example.grapgame.starterproject.db.core.ColumnCodec
+import com.example.grapgame.starterproject.db.core.DeflateCodec
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Measures compression ratio and CPU time per value of [DeflateCodec] on synthetic feed
+ * values, without a dictionary and with one built from samples at two levels. Results are
+ * written to logcat under the `DeflateCodec` tag, run it on target devices before enabling
+ * a codec or changing its level.
+ */
+@RunWith(AndroidJUnit4::class)
+class DeflateCodecBenchmark {
+
+    private val values = (0 until VALUES).map { value(it) }
+
+    @Test
+    fun sizeAndCpuPerValue() {
+        val dictionary = DeflateCodec.buildDictionary(values.take(SAMPLES), DICTIONARY_SIZE)
+        val codecs = linkedMapOf(
+                "deflate-6" to DeflateCodec(),
+                "deflate-6-dict" to DeflateCodec(1, dictionary, 6),
+                "deflate-1-dict" to DeflateCodec(2, dictionary, 1))
+
+        for ((name, codec) in codecs) {
+            measure(name, codec)
+        }
+    }
+
+    private fun measure(name: String, codec: ColumnCodec) {
+        var plainBytes = 0L
+        var storedBytes = 0L
+        val encodeStart = Debug.threadCpuTimeNanos()
+        val encoded = values.map { value ->
+            val bytes = codec.encode(value)
+            plainBytes += value.toByteArray(Charsets.UTF_8).size
+            storedBytes += bytes?.size ?: value.toByteArray(Charsets.UTF_8).size
+            bytes
+        }
+        val encodeNanos = Debug.threadCpuTimeNanos() - encodeStart
+
+        val decodeStart = Debug.threadCpuTimeNanos()
+        encoded.forEachIndexed { i, bytes ->
+            if (bytes != null) {
+                assertEquals(values[i], codec.decode(bytes))
+            }
+        }
+        val decodeNanos = Debug.threadCpuTimeNanos() - decodeStart
+
+        Log.i(TAG, String.format("%s ratio[%.2f] encode[%d us] decode[%d us] per value",
+                name, plainBytes.toDouble() / storedBytes, encodeNanos / 1000 / VALUES, decodeNanos / 1000 / VALUES))
+    }
+
+    private fun value(row: Int) = """{"id":$row,"title":"item $row","score":${row * 0.5},""" +
+            """"tags":["news","sports","local"],"author":{"id":${row % 50},"name":"user ${row % 50}"},""" +
+            """"body":"${"lorem ipsum dolor sit amet $row ".repeat(8)}","created":"2016-12-03T15:01:00Z"}"""
+
+    companion object {
+        private const val TAG = "DeflateCodec"
+        private const val VALUES = 5000
+        private const val SAMPLES = 500
+        private const val DICTIONARY_SIZE = 4096
+    }
+}
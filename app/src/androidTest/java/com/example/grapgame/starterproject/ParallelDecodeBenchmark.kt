@@ -0,0 +1,80 @@
+package com.example.grapgame.starterproject
+
+import android.database.Cursor
+import android.os.SystemClock
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import android.util.Log
+import com.example.grapgame.starterproject.db.DBConstants
+import com.example.grapgame.starterproject.db.core.DatabaseConnection
+import com.example.grapgame.starterproject.db.core.ParallelDecoder
+import com.example.grapgame.starterproject.db.core.Predicate
+import com.example.grapgame.starterproject.db.core.SQLiteHelper
+import com.example.grapgame.starterproject.db.source.FeedSource
+import com.example.grapgame.starterproject.models.FeedModel
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Compares sequential and parallel decoding of feed rows whose value is parsed
+ * as JSON, for every parallelism up to the number of cores of the device.
+ * Timings are written to logcat under the `ParallelDecode` tag.
+ */
+@RunWith(AndroidJUnit4::class)
+class ParallelDecodeBenchmark {
+
+    private val context = InstrumentationRegistry.getTargetContext()
+
+    private class JsonFeedSource : FeedSource() {
+        override fun getDatabaseName() = DATABASE
+
+        override fun getModelFromCursor(cursor: Cursor): FeedModel {
+            val model = super.getModelFromCursor(cursor)
+            JSONObject(model.value).getJSONArray("items").length()
+            return model
+        }
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(DATABASE_FILE)
+    }
+
+    @Test
+    fun decodeAcrossCoreCounts() {
+        DatabaseConnection.init(DATABASE, SQLiteHelper.newInstance(context, DATABASE_FILE, 1))
+        val source = JsonFeedSource()
+        source.deleteAll()
+        source.insertOrUpdate((0 until ROWS).map { FeedModel("key$it", json(it)) })
+
+        val all = Predicate.isNotNull(DBConstants.Feed.KEY)
+        val expected = source.get(all).map { it.key }
+
+        var start = SystemClock.elapsedRealtime()
+        source.get(all)
+        Log.i(TAG, "sequential ${SystemClock.elapsedRealtime() - start}ms")
+
+        for (parallelism in 1..ParallelDecoder.getMaxParallelism()) {
+            start = SystemClock.elapsedRealtime()
+            val keys = source.getParallel(all, parallelism).map { it.key }
+            Log.i(TAG, "parallelism[$parallelism] ${SystemClock.elapsedRealtime() - start}ms")
+            assertEquals(expected, keys)
+        }
+    }
+
+    private fun json(row: Int): String {
+        val items = (0 until ITEMS).joinToString(",") { """{"id":$it,"title":"item $it of $row","score":${it * 0.5}}""" }
+        return """{"row":$row,"items":[$items]}"""
+    }
+
+    companion object {
+        private const val TAG = "ParallelDecode"
+        private const val DATABASE = "benchmark"
+        private const val DATABASE_FILE = "benchmark.db"
+        private const val ROWS = 2000
+        private const val ITEMS = 40
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.grapgame.starterproject
+
+import android.content.ContentValues
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import com.example.grapgame.starterproject.db.DBConstants
+import com.example.grapgame.starterproject.db.core.DatabaseConnection
+import com.example.grapgame.starterproject.db.core.SQLiteHelper
+import com.example.grapgame.starterproject.db.core.WriteBuffer
+import com.example.grapgame.starterproject.db.source.FeedSource
+import com.example.grapgame.starterproject.models.FeedModel
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class WriteBufferTest {
+
+    private val context = InstrumentationRegistry.getTargetContext()
+
+    private open class TestFeedSource : FeedSource() {
+        override fun getDatabaseName() = DATABASE
+    }
+
+    private class BufferedFeedSource : TestFeedSource() {
+        override fun getWriteWindowMillis() = WINDOW_MILLIS
+    }
+
+    @Before
+    fun setUp() {
+        DatabaseConnection.init(DATABASE, SQLiteHelper.newInstance(context, DATABASE_FILE, 1))
+        TestFeedSource().deleteAll()
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(DATABASE_FILE)
+    }
+
+    @Test
+    fun updateAfterInsertReplaceKeepsInsertedValues() {
+        val buffer = WriteBuffer.of(DATABASE, DBConstants.Feed.TABLE_NAME, DBConstants.Feed.ID, WINDOW_MILLIS)
+
+        buffer.update("1", ContentValues().apply { put(DBConstants.Feed.VALUE, "1") })
+        buffer.insert("a", ContentValues().apply {
+            put(DBConstants.Feed.ID, 1)
+            put(DBConstants.Feed.KEY, "a")
+            put(DBConstants.Feed.VALUE, "2")
+        })
+        buffer.update("1", ContentValues().apply { put(DBConstants.Feed.KEY, "b") })
+        buffer.flush()
+
+        val rows = TestFeedSource().getAll()
+        assertEquals(1, rows.size)
+        assertEquals("b", rows[0].key)
+        assertEquals("2", rows[0].value)
+    }
+
+    @Test
+    fun updatesOfSameRowAreMerged() {
+        TestFeedSource().insertOrUpdate(FeedModel("a", "0"))
+        val buffer = WriteBuffer.of(DATABASE, DBConstants.Feed.TABLE_NAME, DBConstants.Feed.ID, WINDOW_MILLIS)
+
+        buffer.update("1", ContentValues().apply { put(DBConstants.Feed.VALUE, "1") })
+        buffer.update("1", ContentValues().apply { put(DBConstants.Feed.KEY, "b") })
+        buffer.update("1", ContentValues().apply { put(DBConstants.Feed.VALUE, "2") })
+        buffer.flush()
+
+        val rows = TestFeedSource().getAll()
+        assertEquals("b", rows[0].key)
+        assertEquals("2", rows[0].value)
+    }
+
+    @Test
+    fun otherInstancesReadPendingWrites() {
+        BufferedFeedSource().insertOrUpdate(FeedModel("a", "1"))
+
+        assertEquals(listOf("a"), TestFeedSource().getAll().map { it.key })
+    }
+
+    @Test
+    fun failingWritesAreDroppedAfterRetries() {
+        val buffer = WriteBuffer.of(DATABASE, "missing", DBConstants.Feed.ID, WINDOW_MILLIS)
+        val dropped = WriteBuffer.getDropped()
+
+        buffer.insert(null, ContentValues().apply { put(DBConstants.Feed.KEY, "a") })
+        repeat(3) {
+            assertFalse(buffer.isEmpty)
+            try {
+                buffer.flush()
+                fail()
+            } catch (expected: RuntimeException) {
+            }
+        }
+
+        assertTrue(buffer.isEmpty)
+        assertEquals(dropped + 1, WriteBuffer.getDropped())
+    }
+
+    companion object {
+        private const val DATABASE = "write-buffer-test"
+        private const val DATABASE_FILE = "write-buffer-test.db"
+        private const val WINDOW_MILLIS = 60_000L
+    }
+}
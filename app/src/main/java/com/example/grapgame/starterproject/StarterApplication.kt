@@ -0,0 +1,25 @@
+package com.example.grapgame.starterproject
+
+import android.app.Application
+import com.example.grapgame.starterproject.db.core.DatabaseConnection
+import com.example.grapgame.starterproject.db.core.SQLiteHelper
+import com.example.grapgame.starterproject.db.core.WriteBuffer
+import com.example.grapgame.starterproject.services.core.OfflineQueue
+import com.example.grapgame.starterproject.services.core.RetrofitClient
+
+class StarterApplication : Application() {
+
+    override fun onCreate() {
+        super.onCreate()
+        DatabaseConnection.init(SQLiteHelper.newInstance(applicationContext, DATABASE_FILE, DATABASE_VERSION))
+        WriteBuffer.init(applicationContext)
+        // Before anything uses the client, OfflineQueue.init may already replay requests.
+        RetrofitClient.init(applicationContext)
+        OfflineQueue.init(applicationContext)
+    }
+
+    companion object {
+        private const val DATABASE_FILE = "starter.db"
+        private const val DATABASE_VERSION = 1
+    }
+}
@@ -19,4 +19,26 @@ public class DBConstants {
         public static final String VALUE = "value";
     }//Feed
 
+    public static class Outbox {
+        public static final String TABLE_NAME = "outbox";
+
+        public static final String ID = "id";
+        public static final String KEY = "key";
+        public static final String METHOD = "method";
+        public static final String URL = "url";
+        public static final String HEADERS = "headers";
+        public static final String CONTENT_TYPE = "content_type";
+        public static final String BODY = "body";
+        public static final String CREATED_AT = "created_at";
+        public static final String ATTEMPTS = "attempts";
+    }//Outbox
+
+    public static class SyncState {
+        public static final String TABLE_NAME = "sync_state";
+
+        public static final String SYNCED_TABLE = "synced_table";
+        public static final String CURSOR = "cursor";
+        public static final String SYNCED_AT = "synced_at";
+    }//SyncState
+
 } // DBConstants
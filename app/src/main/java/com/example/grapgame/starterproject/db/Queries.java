@@ -1,7 +1,10 @@
 package com.example.grapgame.starterproject.db;
 
 
+import com.example.grapgame.starterproject.db.core.ChangeLog;
 import com.example.grapgame.starterproject.db.core.QueryGenerator;
+import com.example.grapgame.starterproject.db.core.SortSpec;
+import com.example.grapgame.starterproject.db.core.SyncState;
 
 /**
  * <p>Contains create queries for every table in the app.</p>
@@ -19,6 +22,54 @@ public class Queries {
                 .generate(DBConstants.Feed.TABLE_NAME);
     } // createFeed
 
+    /**
+     * Index on feed keys, delta sync updates and deletes rows by key.
+     */
+    public static String createFeedKeyIndex() {
+        return String.format("CREATE INDEX IF NOT EXISTS %1$s_%2$s ON %1$s (%2$s)",
+                DBConstants.Feed.TABLE_NAME, DBConstants.Feed.KEY);
+    } // createFeedKeyIndex
+
+    /**
+     * Server cursor of every synced table, see {@link SyncState}.
+     */
+    public static String createSyncState() {
+        return QueryGenerator.getInstance()
+                .addTextPrimaryKey(DBConstants.SyncState.SYNCED_TABLE)
+                .addTextField(DBConstants.SyncState.CURSOR)
+                .addIntegerField(DBConstants.SyncState.SYNCED_AT)
+                .generate(DBConstants.SyncState.TABLE_NAME);
+    } // createSyncState
+
+    /**
+     * Requests waiting for connectivity, see {@link com.example.grapgame.starterproject.services.core.OfflineQueue}.
+     * Requests with the same key are coalesced by replacing the older one.
+     */
+    public static String createOutbox() {
+        return QueryGenerator.getInstance()
+                .addIntegerPrimaryKeyAutoIncrement(DBConstants.Outbox.ID)
+                .addUniqueNonNullTextField(DBConstants.Outbox.KEY)
+                .addNonNullTextField(DBConstants.Outbox.METHOD).addNonNullTextField(DBConstants.Outbox.URL)
+                .addTextFields(DBConstants.Outbox.HEADERS, DBConstants.Outbox.CONTENT_TYPE)
+                .addBlobField(DBConstants.Outbox.BODY)
+                .addIntegerFields(DBConstants.Outbox.CREATED_AT, DBConstants.Outbox.ATTEMPTS)
+                .generate(DBConstants.Outbox.TABLE_NAME);
+    } // createOutbox
+
+    /**
+     * Change log of feed table read by incremental sync, see {@link ChangeLog}.
+     */
+    public static String[] createFeedChangeLog() {
+        return ChangeLog.createQueries(DBConstants.Feed.TABLE_NAME, DBConstants.Feed.ID, DBConstants.Feed.KEY);
+    } // createFeedChangeLog
+
+    /**
+     * Index serving queries ordered by given spec, see {@link SortSpec#toIndexSql(String)}.
+     */
+    public static String createIndex(String tableName, SortSpec sortSpec) {
+        return sortSpec.toIndexSql(tableName);
+    } // createIndex
+
     public static String drop(String tableName) {
         return String.format("DROP TABLE IF EXISTS %s", tableName);
     } // drop
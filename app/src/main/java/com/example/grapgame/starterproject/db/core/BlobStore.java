@@ -0,0 +1,364 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Storage for BLOB columns which keeps small values in the row and spills large
+ * ones to content addressed files, so media and large payloads bloat neither the
+ * database file nor the cursor window.</p>
+ * <p>
+ * <p>Every value written through this class is tagged with one byte. {@link BlobStore#INLINE}
+ * is followed by the value itself, {@link BlobStore#REFERENCE} by the SHA-256 of the value,
+ * which is also the name of the file holding it. Equal values share one file.</p>
+ * <p>
+ * <p>Files are written and read through {@link FileChannel}; large values can be memory
+ * mapped with {@link BlobStore#map(byte[])} or streamed with {@link BlobStore#open(byte[])}
+ * instead of being copied to the heap. Unreferenced files are removed by
+ * {@link BlobStore#collectGarbage(Set)}.</p>
+ * <p>
+ * <p>Data sources declaring blob columns go through this class on their own: values put in
+ * those columns are encoded with {@link BlobStore#encode(ContentValues, Set)} before they are
+ * written, and cursors passed to models are wrapped with {@link BlobStore#resolve(Cursor, Set)},
+ * so {@link Cursor#getBlob(int)} returns stored values.</p>
+ * <p>
+ * <p>Before using any of methods in this class, you must call {@link BlobStore#init}.</p>
+ *
+ * @see com.example.grapgame.starterproject.db.source.core.BaseDataSource#getBlobColumns()
+ */
+public final class BlobStore {
+
+    public static final byte INLINE = 0;
+    public static final byte REFERENCE = 1;
+
+    /**
+     * Length of a column value referencing a spilled file, tag and hash.
+     */
+    public static final int REFERENCE_LENGTH = 33;
+
+    private static final int DEFAULT_INLINE_THRESHOLD = 16 * 1024;
+    private static final int HASH_LENGTH = REFERENCE_LENGTH - 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Files younger than this are never collected, their rows may not be committed yet.
+     */
+    private static final long GC_GRACE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static BlobStore mInstance;
+
+    private final File mDirectory;
+    private final int mInlineThreshold;
+
+    private BlobStore(File directory, int inlineThreshold) {
+        mDirectory = directory;
+        mInlineThreshold = inlineThreshold;
+    } // BlobStore
+
+    /**
+     * @param directory directory for spilled files, e.g. <code>new File(ctx.getFilesDir(), "blobs")</code>
+     */
+    public static void init(@NonNull File directory) {
+        init(directory, DEFAULT_INLINE_THRESHOLD);
+    } // init
+
+    /**
+     * @param directory       directory for spilled files
+     * @param inlineThreshold values up to this many bytes are kept in the row
+     */
+    public static synchronized void init(@NonNull File directory, int inlineThreshold) {
+        if (mInstance == null) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IllegalStateException(String.format("Unable to create [%s].", directory));
+            }
+            mInstance = new BlobStore(directory, inlineThreshold);
+        }
+    } // init
+
+    private static BlobStore getInstance() {
+        if (mInstance == null) {
+            throw new IllegalStateException(String.format("%s is not initialized.", BlobStore.class.getName()));
+        }
+        return mInstance;
+    } // getInstance
+
+    /**
+     * Encode value for a BLOB column, spilling it to a file if it is larger
+     * than inline threshold.
+     *
+     * @param value value to store, null stays null
+     * @return tagged column value
+     */
+    @Nullable
+    public static byte[] encode(@Nullable byte[] value) throws IOException {
+        if (value == null) {
+            return null;
+        }
+        return getInstance().write(new ByteArrayInputStream(value));
+    } // encode
+
+    /**
+     * Same as {@link BlobStore#encode(byte[])} but reads the value from a stream, so
+     * large values are never held in memory. Stream is not closed.
+     */
+    @NonNull
+    public static byte[] encode(@NonNull InputStream in) throws IOException {
+        return getInstance().write(in);
+    } // encode
+
+    /**
+     * Encode byte array values of given columns in place, see {@link BlobStore#encode(byte[])}.
+     *
+     * @param values  values about to be written
+     * @param columns blob columns of the table
+     * @throws IllegalStateException if a value could not be spilled to file
+     */
+    public static void encode(@NonNull ContentValues values, @NonNull Set<String> columns) {
+        for (String column : columns) {
+            Object value = values.get(column);
+            if (value instanceof byte[]) {
+                try {
+                    values.put(column, encode((byte[]) value));
+                } catch (IOException e) {
+                    throw new IllegalStateException(String.format("Unable to store blob of [%s].", column), e);
+                }
+            }
+        }
+    } // encode
+
+    /**
+     * Wrap a cursor so {@link Cursor#getBlob(int)} of given columns returns stored values
+     * instead of tagged column values. Other columns are left as they are.
+     *
+     * @param cursor  cursor positioned on a row
+     * @param columns blob columns of the table
+     * @return wrapped cursor, or the cursor itself if it has none of the columns
+     */
+    @NonNull
+    public static Cursor resolve(@NonNull Cursor cursor, @NonNull Set<String> columns) {
+        final Set<Integer> indices = new HashSet<>();
+        for (String column : columns) {
+            int index = cursor.getColumnIndex(column);
+            if (index >= 0) {
+                indices.add(index);
+            }
+        }
+
+        if (indices.isEmpty()) {
+            return cursor;
+        }
+
+        return new CursorWrapper(cursor) {
+            @Override
+            public byte[] getBlob(int columnIndex) {
+                byte[] column = super.getBlob(columnIndex);
+                if (column == null || !indices.contains(columnIndex)) {
+                    return column;
+                }
+                try {
+                    return read(column);
+                } catch (IOException e) {
+                    throw new IllegalStateException(String.format("Unable to read blob [%s].", referenceOf(column)), e);
+                }
+            }
+        };
+    } // resolve
+
+    /**
+     * @param column tagged column value
+     * @return stored value, loaded in memory
+     */
+    @Nullable
+    public static byte[] read(@Nullable byte[] column) throws IOException {
+        if (column == null) {
+            return null;
+        }
+
+        if (isInline(column)) {
+            return Arrays.copyOfRange(column, 1, column.length);
+        }
+
+        ByteBuffer buffer = map(column);
+        byte[] value = new byte[buffer.remaining()];
+        buffer.get(value);
+        return value;
+    } // read
+
+    /**
+     * @param column tagged column value
+     * @return stream over the stored value
+     */
+    @NonNull
+    public static InputStream open(@NonNull byte[] column) throws IOException {
+        if (isInline(column)) {
+            return new ByteArrayInputStream(column, 1, column.length - 1);
+        }
+        return new FileInputStream(getInstance().fileOf(column));
+    } // open
+
+    /**
+     * Map stored value read only. Inline values are wrapped without copying.
+     *
+     * @param column tagged column value
+     * @return buffer over the stored value
+     */
+    @NonNull
+    public static ByteBuffer map(@NonNull byte[] column) throws IOException {
+        if (isInline(column)) {
+            return ByteBuffer.wrap(column, 1, column.length - 1).slice();
+        }
+
+        RandomAccessFile file = new RandomAccessFile(getInstance().fileOf(column), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // Mapping stays valid after the channel is closed.
+            file.close();
+        }
+    } // map
+
+    /**
+     * @param column tagged column value
+     * @return hash of spilled value, null if value is inline
+     */
+    @Nullable
+    public static String referenceOf(@Nullable byte[] column) {
+        if (column == null || isInline(column)) {
+            return null;
+        }
+        return toHex(column, 1, HASH_LENGTH);
+    } // referenceOf
+
+    /**
+     * <p>Delete every spilled file which is not in <em>references</em> and is older than
+     * one hour. References are collected from rows with
+     * {@link com.example.grapgame.starterproject.db.source.core.BaseDataSource#collectBlobReferences(Set)}
+     * of every source using this store.</p>
+     *
+     * @param references hashes of all values still referenced by rows
+     * @return number of deleted files
+     */
+    public static int collectGarbage(@NonNull Set<String> references) {
+        File[] files = getInstance().mDirectory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long cutOff = System.currentTimeMillis() - GC_GRACE_MILLIS;
+        int deleted = 0;
+        for (File file : files) {
+            if (!references.contains(file.getName()) && file.lastModified() < cutOff && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    } // collectGarbage
+
+    private static boolean isInline(byte[] column) {
+        if (column.length == 0 || (column[0] != INLINE && column[0] != REFERENCE)) {
+            throw new IllegalArgumentException("Column value was not written through BlobStore.");
+        }
+        return column[0] == INLINE;
+    } // isInline
+
+    private File fileOf(byte[] column) {
+        return new File(mDirectory, toHex(column, 1, HASH_LENGTH));
+    } // fileOf
+
+    /**
+     * Buffer up to inline threshold in memory, once exceeded continue
+     * into a temp file, hashing everything on the way.
+     */
+    private byte[] write(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        head.write(INLINE);
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while (head.size() - 1 <= mInlineThreshold && (read = in.read(buffer)) != -1) {
+            head.write(buffer, 0, read);
+        }
+
+        if (head.size() - 1 <= mInlineThreshold) {
+            return head.toByteArray();
+        }
+
+        File temp = File.createTempFile("blob", ".tmp", mDirectory);
+        FileOutputStream out = new FileOutputStream(temp);
+        FileChannel channel = out.getChannel();
+        try {
+            byte[] headBytes = head.toByteArray();
+            digest.update(headBytes, 1, headBytes.length - 1);
+            writeFully(channel, ByteBuffer.wrap(headBytes, 1, headBytes.length - 1));
+
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                writeFully(channel, ByteBuffer.wrap(buffer, 0, read));
+            }
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+
+        byte[] hash = digest.digest();
+        File target = new File(mDirectory, toHex(hash, 0, HASH_LENGTH));
+        if (target.exists()) {
+            temp.delete();
+            // Touch so garbage collection does not race a new reference to an old file.
+            target.setLastModified(System.currentTimeMillis());
+        } else if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException(String.format("Unable to move blob to [%s].", target));
+        }
+
+        byte[] column = new byte[HASH_LENGTH + 1];
+        column[0] = REFERENCE;
+        System.arraycopy(hash, 0, column, 1, HASH_LENGTH);
+        return column;
+    } // write
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    } // writeFully
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    } // sha256
+
+    private static String toHex(byte[] bytes, int offset, int length) {
+        StringBuilder hex = new StringBuilder(length * 2);
+        for (int i = offset; i < offset + length; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        return hex.toString();
+    } // toHex
+
+} // BlobStore
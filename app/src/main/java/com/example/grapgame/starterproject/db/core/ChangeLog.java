@@ -0,0 +1,207 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * <p>Trigger maintained log of changed rows of a table, read by incremental sync so
+ * uploads scale with the number of changes instead of the table size.</p>
+ * <p>
+ * <p>Log of table <code>t</code> lives in <code>t_changes</code> and holds one entry per
+ * changed row: its id, its sync key (the column identifying the row on the server, so
+ * a deleted row can still be named), {@link ChangeLog#UPSERT} or {@link ChangeLog#DELETE}
+ * and an ever increasing sequence. A row changed again before it is synced replaces its entry with a
+ * new sequence, so the log never grows beyond the number of rows changed since the last
+ * acknowledged sync. Entries are removed with {@link ChangeLog#compact(String, String, long)}
+ * once the server has acknowledged them.</p>
+ * <p>
+ * <p>Logging is opt-in per table: execute {@link ChangeLog#createQueries(String, String, String)}
+ * in {@link SQLiteHelper#onCreate}. Every write to a logged table also writes its log, so
+ * only log tables which are synced. Deletes which are not user deletions, e.g. cache
+ * evictions, must run through {@link ChangeLog#runUnlogged} so they are not uploaded.</p>
+ */
+public final class ChangeLog {
+
+    public static final String SEQUENCE = "seq";
+    public static final String ROW_ID = "row_id";
+    public static final String SYNC_KEY = "sync_key";
+    public static final String OPERATION = "op";
+
+    /**
+     * Row was inserted or updated.
+     */
+    public static final String UPSERT = "U";
+
+    /**
+     * Row was deleted.
+     */
+    public static final String DELETE = "D";
+
+    /**
+     * Column aliases used by {@link ChangeLog#selectChangesQuery(String, String)},
+     * prefixed so they never clash with columns of the logged table.
+     */
+    public static final String ALIAS_SEQUENCE = "_change_seq";
+    public static final String ALIAS_ROW_ID = "_change_row_id";
+    public static final String ALIAS_SYNC_KEY = "_change_sync_key";
+    public static final String ALIAS_OPERATION = "_change_op";
+
+    private static final String SUFFIX = "_changes";
+
+    private ChangeLog() {
+        throw new AssertionError("Instance is not allowed.");
+    } // ChangeLog
+
+    /**
+     * @param tableName logged table
+     * @return name of the log table
+     */
+    @NonNull
+    public static String tableOf(@NonNull String tableName) {
+        return tableName + SUFFIX;
+    } // tableOf
+
+    /**
+     * Queries creating the log table of a table and triggers filling it.
+     *
+     * @param tableName logged table
+     * @param idColumn  integer primary key of logged table
+     * @param keyColumn column identifying a row on the server, captured with every change
+     * @return statements to be executed in order
+     */
+    @NonNull
+    public static String[] createQueries(@NonNull String tableName, @NonNull String idColumn, @NonNull String keyColumn) {
+        String log = tableOf(tableName);
+        String createLog = QueryGenerator.getInstance()
+                .addIntegerPrimaryKeyAutoIncrement(SEQUENCE)
+                .addUniqueNonNullIntegerField(ROW_ID)
+                .addTextField(SYNC_KEY)
+                .addNonNullTextField(OPERATION)
+                .generate(log);
+
+        return new String[]{
+                createLog,
+                trigger(tableName, "insert", "INSERT", "NEW", idColumn, keyColumn, UPSERT),
+                trigger(tableName, "update", "UPDATE", "NEW", idColumn, keyColumn, UPSERT),
+                trigger(tableName, "delete", "DELETE", "OLD", idColumn, keyColumn, DELETE)
+        };
+    } // createQueries
+
+    /**
+     * Queries removing the log of a table, the table itself is kept.
+     *
+     * @param tableName logged table
+     * @return statements to be executed in order
+     */
+    @NonNull
+    public static String[] dropQueries(@NonNull String tableName) {
+        String log = tableOf(tableName);
+        return new String[]{
+                String.format("DROP TRIGGER IF EXISTS %s_insert", log),
+                String.format("DROP TRIGGER IF EXISTS %s_update", log),
+                String.format("DROP TRIGGER IF EXISTS %s_delete", log),
+                String.format("DROP TABLE IF EXISTS %s", log)
+        };
+    } // dropQueries
+
+    /**
+     * <p>Query returning log entries after a sequence joined with current rows of the
+     * logged table, oldest first. Takes the sequence and the limit as arguments. Rows of
+     * deleted entries have null columns.</p>
+     *
+     * @param tableName logged table
+     * @param idColumn  integer primary key of logged table
+     * @return select query
+     */
+    @NonNull
+    public static String selectChangesQuery(@NonNull String tableName, @NonNull String idColumn) {
+        return String.format(Locale.US, "SELECT c.%1$s AS %2$s, c.%3$s AS %4$s, c.%5$s AS %6$s, c.%7$s AS %8$s, t.* "
+                        + "FROM %9$s c LEFT JOIN %10$s t ON t.%11$s = c.%3$s WHERE c.%1$s > ? ORDER BY c.%1$s LIMIT ?",
+                SEQUENCE, ALIAS_SEQUENCE, ROW_ID, ALIAS_ROW_ID, SYNC_KEY, ALIAS_SYNC_KEY, OPERATION, ALIAS_OPERATION,
+                tableOf(tableName), tableName, idColumn);
+    } // selectChangesQuery
+
+    /**
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName logged table
+     * @return true if the table has a change log
+     */
+    public static boolean isEnabled(@NonNull String database, @NonNull String tableName) {
+        return !DatabaseManager.getColumns(database, tableOf(tableName)).isEmpty();
+    } // isEnabled
+
+    /**
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName logged table
+     * @return sequence of the latest change, 0 if log is empty
+     */
+    public static long getLatestSequence(@NonNull String database, @NonNull String tableName) {
+        return DatabaseManager.longForQuery(database, String.format("SELECT ifnull(max(%s), 0) FROM %s", SEQUENCE, tableOf(tableName)));
+    } // getLatestSequence
+
+    /**
+     * Remove entries up to and including an acknowledged sequence.
+     *
+     * @param database     name of the database registered with {@link DatabaseConnection}
+     * @param tableName    logged table
+     * @param acknowledged last sequence the server has received
+     * @return number of removed entries
+     */
+    public static int compact(@NonNull String database, @NonNull String tableName, long acknowledged) {
+        return DatabaseManager.executeUpdateDelete(database,
+                String.format("DELETE FROM %s WHERE %s <= ?", tableOf(tableName), SEQUENCE), String.valueOf(acknowledged));
+    } // compact
+
+    /**
+     * <p>Remove entries written after a sequence, e.g. by applying changes received from the
+     * server which must not be uploaded again. Call inside the transaction which wrote them.</p>
+     *
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName logged table
+     * @param sequence  latest sequence before the writes
+     * @return number of removed entries
+     */
+    public static int discardAfter(@NonNull String database, @NonNull String tableName, long sequence) {
+        return DatabaseManager.executeUpdateDelete(database,
+                String.format("DELETE FROM %s WHERE %s > ?", tableOf(tableName), SEQUENCE), String.valueOf(sequence));
+    } // discardAfter
+
+    /**
+     * <p>Run writes which must not be uploaded, e.g. evicting rows from the local cache, in
+     * one transaction and remove the log entries they wrote. A deleted row loses its pending
+     * local change as well. Runs the callback in a plain transaction if the table has no log.</p>
+     *
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName logged table
+     * @param callback  writes to be kept out of the log
+     */
+    public static void runUnlogged(@NonNull final String database, @NonNull final String tableName, @NonNull final DatabaseManager.TransactionCallback callback) {
+        final boolean logged = isEnabled(database, tableName);
+        DatabaseManager.runInTransaction(database, new DatabaseManager.TransactionCallback() {
+            @Override
+            public void execute(@NonNull SQLiteDatabase db) {
+                long sequence = logged ? getLatestSequence(database, tableName) : 0;
+                callback.execute(db);
+                if (logged) {
+                    discardAfter(database, tableName, sequence);
+                }
+            }
+        });
+    } // runUnlogged
+
+    /**
+     * <code>INSERT OR REPLACE</code> on the unique row id gives a row changed again a new
+     * sequence and keeps a single entry for it.
+     *
+     * @param row <code>NEW</code> or <code>OLD</code>, the row version to be logged
+     */
+    private static String trigger(String tableName, String name, String event, String row, String idColumn, String keyColumn, String operation) {
+        String log = tableOf(tableName);
+        return String.format("CREATE TRIGGER IF NOT EXISTS %1$s_%2$s AFTER %3$s ON %4$s BEGIN "
+                        + "INSERT OR REPLACE INTO %1$s (%5$s, %6$s, %7$s) VALUES (%8$s.%9$s, %8$s.%10$s, '%11$s'); END",
+                log, name, event, tableName, ROW_ID, SYNC_KEY, OPERATION, row, idColumn, keyColumn, operation);
+    } // trigger
+
+} // ChangeLog
@@ -0,0 +1,291 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Reads a table in chunks of rows ordered by <code>rowid</code>, so a single
+ * {@link Cursor} never has to hold the whole result in its window. Every chunk
+ * is a separate query starting after the last <code>rowid</code> seen.</p>
+ * <p>
+ * <p>Columns marked as large are selected with <code>substr</code>, only the first
+ * piece lands in the cursor window. Rows whose value is longer than a piece are
+ * completed with further <code>substr</code> queries and handed to the callback
+ * as a single row {@link MatrixCursor}, so callbacks see a full row either way.</p>
+ * <p>
+ * <p>
+ * <p>{@link ChunkedQuery#runOrdered} serves any other order: it reads only the sorted
+ * <code>rowid</code>s first, then reads their rows in chunks with the same piecewise
+ * projection and hands them to the callback in sorted order.</p>
+ * <p>
+ * <p>Tables created <code>WITHOUT ROWID</code> are not supported.</p>
+ *
+ * @see DatabaseManager#queryChunked
+ */
+final class ChunkedQuery {
+
+    /**
+     * Characters (for TEXT) or bytes (for BLOB) read per piece. Kept well below
+     * the 2 MB cursor window even for multi byte characters.
+     */
+    static final int PIECE_SIZE = 256 * 1024;
+
+    private static final String ROWID = "_chunk_rowid";
+    private static final String LENGTH_SUFFIX = "_chunk_len";
+
+    private final SQLiteDatabase mDb;
+    private final String mTableName;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final int mChunkSize;
+    private final Set<String> mLargeColumns;
+    private final String mProjection;
+    private final String[] mColumns;
+    private final String[] mRowColumns;
+
+    ChunkedQuery(SQLiteDatabase db, String tableName, Set<String> columns, String selection,
+                 String[] selectionArgs, int chunkSize, @NonNull Set<String> largeColumns) {
+        mDb = db;
+        mTableName = tableName;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs == null ? new String[0] : selectionArgs;
+        mChunkSize = chunkSize;
+        mLargeColumns = largeColumns;
+        mColumns = columns.toArray(new String[columns.size()]);
+        mRowColumns = new String[mColumns.length + 1];
+        mRowColumns[0] = ROWID;
+        System.arraycopy(mColumns, 0, mRowColumns, 1, mColumns.length);
+        mProjection = buildProjection();
+    } // ChunkedQuery
+
+    private String buildProjection() {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append("rowid AS ").append(ROWID);
+        for (String column : mColumns) {
+            builder.append(", ");
+            if (mLargeColumns.contains(column)) {
+                builder.append("substr(").append(column).append(", 1, ").append(PIECE_SIZE).append(") AS ").append(column)
+                        .append(", length(").append(column).append(") AS ").append(column).append(LENGTH_SUFFIX);
+            } else {
+                builder.append(column);
+            }
+        }
+        return builder.toString();
+    } // buildProjection
+
+    /**
+     * Run the query, passing every row to the callback.
+     *
+     * @return number of rows read
+     */
+    int run(@NonNull DatabaseManager.CursorCallback callback) {
+        String where = mSelection == null ? "rowid > ?" : String.format("(%s) AND rowid > ?", mSelection);
+        String sql = String.format("SELECT %s FROM %s WHERE %s ORDER BY rowid LIMIT %d", mProjection, mTableName, where, mChunkSize);
+
+        String[] args = Arrays.copyOf(mSelectionArgs, mSelectionArgs.length + 1);
+        long lastRowId = Long.MIN_VALUE;
+        int total = 0;
+        int read;
+
+        do {
+            args[args.length - 1] = String.valueOf(lastRowId);
+            Cursor cursor = mDb.rawQuery(sql, args);
+            read = 0;
+            try {
+                int rowIdIndex = cursor.getColumnIndex(ROWID);
+                if (cursor.moveToFirst()) {
+                    do {
+                        lastRowId = cursor.getLong(rowIdIndex);
+                        Cursor oversized = completeOversized(cursor, lastRowId);
+                        if (oversized == null) {
+                            callback.fetchData(cursor);
+                        } else {
+                            oversized.moveToFirst();
+                            callback.fetchData(oversized);
+                            oversized.close();
+                        }
+                        read++;
+                    } while (cursor.moveToNext());
+                }
+            } finally {
+                cursor.close();
+            }
+            total += read;
+        } while (read == mChunkSize);
+
+        return total;
+    } // run
+
+    /**
+     * <p>Run the query in the order of an <code>ORDER BY</code> clause. Sorted rowids are
+     * read first, their rows are then read in chunks and passed to the callback in that
+     * order. Rows deleted between the two steps are skipped.</p>
+     *
+     * @param orderBy order by clause, without the keywords
+     * @param limit   limit clause, null for all rows
+     * @return number of rows read
+     */
+    int runOrdered(@NonNull String orderBy, String limit, @NonNull DatabaseManager.CursorCallback callback) {
+        List<Long> rowIds = readRowIds(orderBy, limit);
+        int total = 0;
+
+        for (int from = 0; from < rowIds.size(); from += mChunkSize) {
+            List<Long> chunk = rowIds.subList(from, Math.min(rowIds.size(), from + mChunkSize));
+            String[] args = new String[chunk.size()];
+            StringBuilder in = new StringBuilder(chunk.size() * 3);
+            for (int i = 0; i < args.length; i++) {
+                args[i] = String.valueOf(chunk.get(i));
+                in.append(i == 0 ? "?" : ", ?");
+            }
+
+            Map<Long, Object[]> rows = new HashMap<>(chunk.size() * 2);
+            Cursor cursor = mDb.rawQuery(String.format("SELECT %s FROM %s WHERE rowid IN (%s)", mProjection, mTableName, in), args);
+            try {
+                int rowIdIndex = cursor.getColumnIndex(ROWID);
+                while (cursor.moveToNext()) {
+                    long rowId = cursor.getLong(rowIdIndex);
+                    rows.put(rowId, readRow(cursor, rowId));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            MatrixCursor ordered = new MatrixCursor(mRowColumns, rows.size());
+            for (Long rowId : chunk) {
+                Object[] row = rows.get(rowId);
+                if (row != null) {
+                    ordered.addRow(row);
+                }
+            }
+            while (ordered.moveToNext()) {
+                callback.fetchData(ordered);
+                total++;
+            }
+            ordered.close();
+        }
+
+        return total;
+    } // runOrdered
+
+    private List<Long> readRowIds(String orderBy, String limit) {
+        StringBuilder sql = new StringBuilder(128).append("SELECT rowid FROM ").append(mTableName);
+        if (mSelection != null) {
+            sql.append(" WHERE (").append(mSelection).append(')');
+        }
+        sql.append(" ORDER BY ").append(orderBy);
+        if (limit != null) {
+            sql.append(" LIMIT ").append(limit);
+        }
+
+        List<Long> rowIds = new ArrayList<>();
+        Cursor cursor = mDb.rawQuery(sql.toString(), mSelectionArgs);
+        try {
+            while (cursor.moveToNext()) {
+                rowIds.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rowIds;
+    } // readRowIds
+
+    /**
+     * @return a single row cursor with full values if any large column of
+     * current row did not fit in one piece, null otherwise
+     */
+    private Cursor completeOversized(Cursor cursor, long rowId) {
+        boolean oversized = false;
+        for (String column : mLargeColumns) {
+            if (isOversized(cursor, column)) {
+                oversized = true;
+                break;
+            }
+        }
+
+        if (!oversized) {
+            return null;
+        }
+
+        MatrixCursor row = new MatrixCursor(mRowColumns, 1);
+        row.addRow(readRow(cursor, rowId));
+        return row;
+    } // completeOversized
+
+    /**
+     * @return values of current row in the order of {@link ChunkedQuery#mRowColumns},
+     * large values which did not fit in one piece are read in full
+     */
+    private Object[] readRow(Cursor cursor, long rowId) {
+        Object[] values = new Object[mRowColumns.length];
+        for (int i = 0; i < mRowColumns.length; i++) {
+            String name = mRowColumns[i];
+            int index = cursor.getColumnIndex(name);
+            if (isOversized(cursor, name)) {
+                long length = cursor.getLong(cursor.getColumnIndex(name + LENGTH_SUFFIX));
+                values[i] = readPieces(name, rowId, length, cursor.getType(index) == Cursor.FIELD_TYPE_BLOB);
+            } else {
+                values[i] = valueOf(cursor, index);
+            }
+        }
+        return values;
+    } // readRow
+
+    private boolean isOversized(Cursor cursor, String column) {
+        if (!mLargeColumns.contains(column)) {
+            return false;
+        }
+        int lengthIndex = cursor.getColumnIndex(column + LENGTH_SUFFIX);
+        return lengthIndex >= 0 && !cursor.isNull(lengthIndex) && cursor.getLong(lengthIndex) > PIECE_SIZE;
+    } // isOversized
+
+    private Object readPieces(String column, long rowId, long length, boolean blob) {
+        String sql = String.format("SELECT substr(%s, ?, %d) FROM %s WHERE rowid = ?", column, PIECE_SIZE, mTableName);
+        StringBuilder text = blob ? null : new StringBuilder((int) length);
+        ByteArrayOutputStream bytes = blob ? new ByteArrayOutputStream((int) length) : null;
+
+        for (long start = 1; start <= length; start += PIECE_SIZE) {
+            Cursor piece = mDb.rawQuery(sql, new String[]{String.valueOf(start), String.valueOf(rowId)});
+            try {
+                if (!piece.moveToFirst()) {
+                    break;
+                }
+                if (blob) {
+                    byte[] chunk = piece.getBlob(0);
+                    bytes.write(chunk, 0, chunk.length);
+                } else {
+                    text.append(piece.getString(0));
+                }
+            } finally {
+                piece.close();
+            }
+        }
+
+        return blob ? bytes.toByteArray() : text.toString();
+    } // readPieces
+
+    static Object valueOf(Cursor cursor, int index) {
+        switch (cursor.getType(index)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(index);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(index);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(index);
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            default:
+                return cursor.getString(index);
+        }
+    } // valueOf
+
+} // ChunkedQuery
@@ -0,0 +1,32 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.support.annotation.NonNull;
+
+/**
+ * <p>Encodes TEXT column values into a compact BLOB before they are written
+ * and decodes them back when read.</p>
+ * <p>
+ * <p>Encoded values are stored as BLOBs while plain values stay TEXT, so
+ * readers tell them apart by the storage class of the column and rows
+ * written before a codec was enabled keep working.</p>
+ *
+ * @see DeflateCodec
+ * @see LazyText
+ */
+public interface ColumnCodec {
+
+    /**
+     * @param text value to be stored
+     * @return encoded value, or null if encoding would not save space and
+     * the value should be stored as plain text
+     */
+    byte[] encode(@NonNull String text);
+
+    /**
+     * @param encoded value returned by {@link ColumnCodec#encode(String)}
+     * @return original text
+     */
+    @NonNull
+    String decode(@NonNull byte[] encoded);
+
+} // ColumnCodec
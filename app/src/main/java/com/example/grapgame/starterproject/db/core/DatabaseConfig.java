@@ -0,0 +1,293 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+/**
+ * <p>Typed set of PRAGMAs applied by {@link SQLiteHelper} every time a
+ * connection is configured. Values left unset are not touched, so SQLite
+ * (or Android) defaults stay in effect for them.</p>
+ * <p>
+ * <p>Three presets cover the common cases:</p>
+ * <ul>
+ * <li>{@link DatabaseConfig#readHeavy()} - large page cache and memory mapped reads,
+ * for databases which are scanned far more often than written (e.g. feed). Uses a rollback
+ * journal, so every read runs on the connection these settings are applied to.</li>
+ * <li>{@link DatabaseConfig#writeHeavy()} - WAL with <code>synchronous=NORMAL</code> so commits
+ * do not fsync, and incremental auto vacuum for tables with frequent bulk deletes.</li>
+ * <li>{@link DatabaseConfig#lowMemory()} - small cache, no mmap and temp tables on disk.</li>
+ * </ul>
+ * <p>
+ * <p>Presets are unmeasured starting points, their values follow SQLite's documentation
+ * rather than numbers from our devices. <code>DatabaseConfigBenchmark</code> (androidTest)
+ * times bulk writes, single row writes and scans per preset; run it on target devices
+ * before changing them, since mmap and page cache gains depend heavily on file size and
+ * storage.</p>
+ * <p>
+ * <p><code>cache_size</code>, <code>mmap_size</code>, <code>temp_store</code> and
+ * <code>synchronous</code> are per connection. {@link SQLiteHelper} applies them in both
+ * <code>onConfigure</code> and <code>onOpen</code>, so they hold on every connection the
+ * helper is called for, see {@link DatabaseConfig#applyConnection(SQLiteDatabase)}. With
+ * WAL, Android additionally reads through pooled connections it opens without calling the
+ * helper, which keep SQLite's defaults for these, so the cache and mmap settings of a WAL
+ * config only affect writes and reads inside transactions.</p>
+ * <p>
+ * <p><code>page_size</code> and <code>auto_vacuum</code> only take effect on a new (empty)
+ * database or after a full <code>VACUUM</code>.</p>
+ *
+ * @see SQLiteHelper#newInstance(android.content.Context, String, int, DatabaseConfig)
+ */
+public final class DatabaseConfig {
+
+    private static final int MB = 1024 * 1024;
+
+    private final Long mMmapSize;
+    private final Integer mCacheSize;
+    private final Integer mPageSize;
+    private final Synchronous mSynchronous;
+    private final TempStore mTempStore;
+    private final JournalMode mJournalMode;
+    private final AutoVacuum mAutoVacuum;
+
+    private DatabaseConfig(Builder builder) {
+        mMmapSize = builder.mmapSize;
+        mCacheSize = builder.cacheSize;
+        mPageSize = builder.pageSize;
+        mSynchronous = builder.synchronous;
+        mTempStore = builder.tempStore;
+        mJournalMode = builder.journalMode;
+        mAutoVacuum = builder.autoVacuum;
+    } // DatabaseConfig
+
+    /**
+     * @return config which leaves every PRAGMA at its default
+     */
+    @NonNull
+    public static DatabaseConfig defaults() {
+        return new Builder().build();
+    } // defaults
+
+    /**
+     * 8 MB page cache and 64 MB of memory mapped I/O so repeated scans are
+     * served without read() copies. The journal is <code>TRUNCATE</code> rather
+     * than WAL, since WAL reads go through pooled connections which never get
+     * the cache and mmap settings.
+     */
+    @NonNull
+    public static DatabaseConfig readHeavy() {
+        return new Builder()
+                .pageSize(4096)
+                .journalMode(JournalMode.TRUNCATE)
+                .synchronous(Synchronous.NORMAL)
+                .cacheSizeKb(8 * 1024)
+                .mmapSize(64L * MB)
+                .tempStore(TempStore.MEMORY)
+                .build();
+    } // readHeavy
+
+    /**
+     * WAL with <code>synchronous=NORMAL</code> (durable across app crashes, fsync only
+     * on checkpoint), moderate cache, and incremental auto vacuum so freed pages can
+     * be reclaimed in small steps.
+     */
+    @NonNull
+    public static DatabaseConfig writeHeavy() {
+        return new Builder()
+                .pageSize(4096)
+                .autoVacuum(AutoVacuum.INCREMENTAL)
+                .journalMode(JournalMode.WAL)
+                .synchronous(Synchronous.NORMAL)
+                .cacheSizeKb(4 * 1024)
+                .mmapSize(16L * MB)
+                .tempStore(TempStore.MEMORY)
+                .build();
+    } // writeHeavy
+
+    /**
+     * 512 KB page cache, mmap disabled and temp tables spilled to disk.
+     */
+    @NonNull
+    public static DatabaseConfig lowMemory() {
+        return new Builder()
+                .pageSize(4096)
+                .autoVacuum(AutoVacuum.INCREMENTAL)
+                .journalMode(JournalMode.TRUNCATE)
+                .synchronous(Synchronous.NORMAL)
+                .cacheSizeKb(512)
+                .mmapSize(0)
+                .tempStore(TempStore.FILE)
+                .build();
+    } // lowMemory
+
+    /**
+     * @return true if connections are switched to WAL
+     */
+    boolean isWriteAheadLogging() {
+        return mJournalMode == JournalMode.WAL;
+    } // isWriteAheadLogging
+
+    /**
+     * <p>Apply every PRAGMA on given connection. Order matters, <code>page_size</code> and
+     * <code>auto_vacuum</code> must be set before the journal is switched to WAL.</p>
+     *
+     * @param db connection being configured
+     */
+    void apply(@NonNull SQLiteDatabase db) {
+        if (mPageSize != null) {
+            pragma(db, "page_size", String.valueOf(mPageSize));
+        }
+
+        if (mAutoVacuum != null) {
+            pragma(db, "auto_vacuum", mAutoVacuum.name());
+        }
+
+        if (mJournalMode == JournalMode.WAL) {
+            // Android manages WAL itself, setting it through PRAGMA would be undone on open.
+            db.enableWriteAheadLogging();
+        } else if (mJournalMode != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && db.isWriteAheadLoggingEnabled()) {
+                db.disableWriteAheadLogging();
+            }
+            pragma(db, "journal_mode", mJournalMode.name());
+        }
+
+        applyConnection(db);
+    } // apply
+
+    /**
+     * <p>Apply the per connection PRAGMAs, <code>synchronous</code>, <code>cache_size</code>,
+     * <code>mmap_size</code> and <code>temp_store</code>. SQLite keeps them per connection
+     * and every new connection starts with the defaults, so they are applied on each open.</p>
+     *
+     * @param db connection being opened
+     */
+    void applyConnection(@NonNull SQLiteDatabase db) {
+        if (mSynchronous != null) {
+            pragma(db, "synchronous", mSynchronous.name());
+        }
+
+        if (mCacheSize != null) {
+            pragma(db, "cache_size", String.valueOf(mCacheSize));
+        }
+
+        if (mMmapSize != null) {
+            pragma(db, "mmap_size", String.valueOf(mMmapSize));
+        }
+
+        if (mTempStore != null) {
+            pragma(db, "temp_store", mTempStore.name());
+        }
+    } // applyConnection
+
+    /**
+     * PRAGMAs like <code>journal_mode</code> and <code>mmap_size</code> return a row, which
+     * {@link SQLiteDatabase#execSQL(String)} refuses, so every PRAGMA is run as a query.
+     */
+    private static void pragma(SQLiteDatabase db, String name, String value) {
+        Cursor cursor = db.rawQuery(String.format("PRAGMA %s = %s", name, value), null);
+        cursor.moveToFirst();
+        cursor.close();
+    } // pragma
+
+    public enum JournalMode {
+        DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF
+    } // JournalMode
+
+    public enum Synchronous {
+        OFF, NORMAL, FULL
+    } // Synchronous
+
+    public enum TempStore {
+        DEFAULT, FILE, MEMORY
+    } // TempStore
+
+    public enum AutoVacuum {
+        NONE, FULL, INCREMENTAL
+    } // AutoVacuum
+
+    /**
+     * Builder for {@link DatabaseConfig}.
+     */
+    public static final class Builder {
+
+        private Long mmapSize;
+        private Integer cacheSize;
+        private Integer pageSize;
+        private Synchronous synchronous;
+        private TempStore tempStore;
+        private JournalMode journalMode;
+        private AutoVacuum autoVacuum;
+
+        /**
+         * @param bytes bytes of the file to memory map, 0 disables mmap
+         */
+        @NonNull
+        public Builder mmapSize(long bytes) {
+            mmapSize = bytes;
+            return this;
+        } // mmapSize
+
+        /**
+         * @param pages page cache size in pages
+         */
+        @NonNull
+        public Builder cacheSizePages(int pages) {
+            cacheSize = pages;
+            return this;
+        } // cacheSizePages
+
+        /**
+         * @param kb page cache size in KiB, independent of page size
+         */
+        @NonNull
+        public Builder cacheSizeKb(int kb) {
+            cacheSize = -kb;
+            return this;
+        } // cacheSizeKb
+
+        /**
+         * @param bytes page size, power of two between 512 and 65536
+         */
+        @NonNull
+        public Builder pageSize(int bytes) {
+            if (bytes < 512 || bytes > 65536 || Integer.bitCount(bytes) != 1) {
+                throw new IllegalArgumentException(String.format("Invalid page size [%d].", bytes));
+            }
+            pageSize = bytes;
+            return this;
+        } // pageSize
+
+        @NonNull
+        public Builder synchronous(Synchronous synchronous) {
+            this.synchronous = synchronous;
+            return this;
+        } // synchronous
+
+        @NonNull
+        public Builder tempStore(TempStore tempStore) {
+            this.tempStore = tempStore;
+            return this;
+        } // tempStore
+
+        @NonNull
+        public Builder journalMode(JournalMode journalMode) {
+            this.journalMode = journalMode;
+            return this;
+        } // journalMode
+
+        @NonNull
+        public Builder autoVacuum(AutoVacuum autoVacuum) {
+            this.autoVacuum = autoVacuum;
+            return this;
+        } // autoVacuum
+
+        @NonNull
+        public DatabaseConfig build() {
+            return new DatabaseConfig(this);
+        } // build
+
+    } // Builder
+
+} // DatabaseConfig
@@ -3,8 +3,14 @@ package com.example.grapgame.starterproject.db.core;
 import android.app.Application;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.support.annotation.NonNull;
 
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * <p>A <b>thread safe</b> connection manager for maintaing a
@@ -14,6 +20,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * with appropriate {@link SQLiteOpenHelper}, otherwise an {@link IllegalStateException} will
  * be thrown if instance is used without <b>initialization</b>.</p>
  * <p>
+ * <p>More than one database can be registered, each under its own name with its own
+ * {@link SQLiteOpenHelper}, connection counter and lock. Methods without a database name
+ * act on {@link DatabaseConnection#DEFAULT_DATABASE}. Other databases can be attached to
+ * a connection with {@link DatabaseConnection#attach(String, String, String)} for cross
+ * database queries. Android turns write-ahead logging off for a connection with attached
+ * databases, so attaching to a database configured for WAL is rejected.</p>
+ * <p>
  * <p>Best place to initialize this class is {@link Application#onCreate()}.</p>
  * <p>
  * Created on 2016-12-03 14:08.
@@ -23,13 +36,27 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public final class DatabaseConnection {
 
-    private static DatabaseConnection mInstance;
-    private static SQLiteOpenHelper mSqLiteOpenHelper;
+    /**
+     * Name of the database used by every method which does not take a database name.
+     */
+    public static final String DEFAULT_DATABASE = "default";
+
+    private static final Map<String, DatabaseConnection> mInstances = new ConcurrentHashMap<>();
+
+    /**
+     * Aliases are concatenated into ATTACH and DETACH statements, so only plain identifiers are allowed.
+     */
+    private static final Pattern ALIAS = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final SQLiteOpenHelper mSqLiteOpenHelper;
+    private final Map<String, String> mAttachments;
 
     private AtomicInteger mCounter;
     private SQLiteDatabase mSqLiteDatabase;
 
-    private DatabaseConnection() {
+    private DatabaseConnection(SQLiteOpenHelper helper) {
+        mSqLiteOpenHelper = helper;
+        mAttachments = new LinkedHashMap<>();
         mCounter = new AtomicInteger(0);
     }
 
@@ -41,39 +68,152 @@ public final class DatabaseConnection {
      * @param helper {@link SQLiteOpenHelper}
      */
     public static void init(SQLiteOpenHelper helper) {
-        if (mSqLiteOpenHelper == null) {
-            mInstance = new DatabaseConnection();
-            mSqLiteOpenHelper = helper;
+        init(DEFAULT_DATABASE, helper);
+    } // init
+
+    /**
+     * Register a named database with its own {@link SQLiteOpenHelper}. Calling
+     * this method again with the same name has no effect.
+     *
+     * @param name   name used to refer to this database in {@link DatabaseManager}
+     * @param helper {@link SQLiteOpenHelper}
+     */
+    public static synchronized void init(@NonNull String name, SQLiteOpenHelper helper) {
+        if (!mInstances.containsKey(name)) {
+            mInstances.put(name, new DatabaseConnection(helper));
         }
     } // init
 
     /**
-     * Returns a singleton instance of {@link DatabaseConnection}.
+     * @param name name of the database
+     * @return true if a database is registered with given name
+     */
+    public static boolean isInitialized(@NonNull String name) {
+        return mInstances.containsKey(name);
+    } // isInitialized
+
+    /**
+     * @param name name of the database
+     * @return true if no thread is using a connection of the database
+     */
+    public static boolean isIdle(@NonNull String name) {
+        return getInstance(name).mCounter.get() == 0;
+    } // isIdle
+
+    /**
+     * @param name name of the database
+     * @return number of callers holding a connection of the database
+     */
+    static int getUseCount(@NonNull String name) {
+        return getInstance(name).mCounter.get();
+    } // getUseCount
+
+    /**
+     * Returns the instance of {@link DatabaseConnection} registered with given name.
      *
      * @return DatabaseConnection
      */
-    private static DatabaseConnection getInstance() {
+    private static DatabaseConnection getInstance(String name) {
+        DatabaseConnection instance = mInstances.get(name);
 
-        if (mInstance == null) {
-            throw new IllegalStateException(String.format("%s is not initialized.", DatabaseConnection.class.getName()));
+        if (instance == null) {
+            throw new IllegalStateException(String.format("%s is not initialized for database [%s].", DatabaseConnection.class.getName(), name));
         }
 
-        return mInstance;
+        return instance;
     } // getInstance
 
     /**
      * A static proxy for {@link DatabaseConnection#openConnection()}
      */
     public static SQLiteDatabase getAndOpenConnection() {
-        return DatabaseConnection.getInstance().openConnection();
+        return getAndOpenConnection(DEFAULT_DATABASE);
+    } // getAndOpenConnection
+
+    /**
+     * A static proxy for {@link DatabaseConnection#openConnection()} on a named database.
+     */
+    public static SQLiteDatabase getAndOpenConnection(String name) {
+        return DatabaseConnection.getInstance(name).openConnection();
     } // getAndOpenConnection
 
     /**
      * A static proxy for {@link DatabaseConnection#close()}
      */
     public static void closeConnection() {
-        DatabaseConnection.getInstance().close();
-    } // getAndOpenConnection
+        closeConnection(DEFAULT_DATABASE);
+    } // closeConnection
+
+    /**
+     * A static proxy for {@link DatabaseConnection#close()} on a named database.
+     */
+    public static void closeConnection(String name) {
+        DatabaseConnection.getInstance(name).close();
+    } // closeConnection
+
+    /**
+     * <p>Attach database registered as <em>attached</em> to connections of <em>database</em>
+     * under given alias, so its tables can be queried as <code>alias.table</code>. Attachment
+     * is applied every time the connection is opened.</p>
+     *
+     * @param database name of the database which will see the attached database
+     * @param attached name of the database to attach
+     * @param alias    schema name of attached database in sql, letters, digits and underscores
+     * @throws IllegalArgumentException if alias is not a plain identifier
+     * @throws IllegalStateException    if <em>database</em> is configured for WAL, see {@link DatabaseConfig}
+     */
+    public static void attach(@NonNull String database, @NonNull String attached, @NonNull String alias) {
+        SQLiteDatabase db = getAndOpenConnection(attached);
+        String path = db.getPath();
+        closeConnection(attached);
+        attach(database, new File(path), alias);
+    } // attach
+
+    /**
+     * Same as {@link DatabaseConnection#attach(String, String, String)} but attaches
+     * a database file which is not registered with this class.
+     */
+    public static void attach(@NonNull String database, @NonNull File file, @NonNull String alias) {
+        if (!ALIAS.matcher(alias).matches() || "main".equalsIgnoreCase(alias) || "temp".equalsIgnoreCase(alias)) {
+            throw new IllegalArgumentException(String.format("Invalid alias [%s] for attached database.", alias));
+        }
+
+        DatabaseConnection instance = getInstance(database);
+        if (instance.mSqLiteOpenHelper instanceof SQLiteHelper
+                && ((SQLiteHelper) instance.mSqLiteOpenHelper).getConfig().isWriteAheadLogging()) {
+            // execSQL disables WAL on a connection running ATTACH, undoing the config silently.
+            throw new IllegalStateException(String.format("Database [%s] uses WAL, attaching [%s] would turn it off.", database, alias));
+        }
+        instance.addAttachment(alias, file.getAbsolutePath());
+    } // attach
+
+    /**
+     * Detach a database previously attached with given alias.
+     *
+     * @param database name of the database
+     * @param alias    alias of attached database
+     */
+    public static void detach(@NonNull String database, @NonNull String alias) {
+        getInstance(database).removeAttachment(alias);
+    } // detach
+
+    private synchronized void addAttachment(String alias, String path) {
+        String previous = mAttachments.put(alias, path);
+        if (path.equals(previous) || mCounter.get() == 0) {
+            return;
+        }
+
+        if (previous != null) {
+            mSqLiteDatabase.execSQL("DETACH DATABASE " + alias);
+        }
+        mSqLiteDatabase.execSQL("ATTACH DATABASE ? AS " + alias, new Object[]{path});
+    } // addAttachment
+
+    private synchronized void removeAttachment(String alias) {
+        if (mAttachments.remove(alias) != null && mCounter.get() > 0) {
+            mSqLiteDatabase.execSQL("DETACH DATABASE " + alias);
+        }
+    } // removeAttachment
 
     /**
      * Opens a new connection if there is no connection available.
@@ -85,6 +225,9 @@ public final class DatabaseConnection {
 
         if (mCounter.incrementAndGet() == 1) {
             mSqLiteDatabase = mSqLiteOpenHelper.getWritableDatabase();
+            for (Map.Entry<String, String> entry : mAttachments.entrySet()) {
+                mSqLiteDatabase.execSQL("ATTACH DATABASE ? AS " + entry.getKey(), new Object[]{entry.getValue()});
+            }
         }
 
         return mSqLiteDatabase;
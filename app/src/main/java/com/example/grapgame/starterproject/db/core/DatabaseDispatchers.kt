@@ -0,0 +1,25 @@
+package com.example.grapgame.starterproject.db.core
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.withContext
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Coroutine adapters for [DatabaseManager].
+ */
+
+private val dispatchers = ConcurrentHashMap<String, CoroutineDispatcher>()
+
+/**
+ * Dispatcher running on the executor of a named database (see [DatabaseManager.getExecutor]),
+ * so coroutines share the threads and ordering of other background work of the database.
+ */
+fun dbDispatcher(database: String = DatabaseConnection.DEFAULT_DATABASE): CoroutineDispatcher =
+        dispatchers.getOrPut(database) { DatabaseManager.getExecutor(database).asCoroutineDispatcher() }
+
+/**
+ * Run blocking database work on [dbDispatcher] of the database and resume with its result.
+ */
+suspend fun <R> onDatabase(database: String = DatabaseConnection.DEFAULT_DATABASE, block: () -> R): R =
+        withContext(dbDispatcher(database)) { block() }
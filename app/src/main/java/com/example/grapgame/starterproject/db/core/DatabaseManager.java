@@ -2,11 +2,19 @@ package com.example.grapgame.starterproject.db.core;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * <p>It manages every operation related to database e.g. reading,
@@ -25,6 +33,11 @@ public class DatabaseManager {
 
     private static final boolean LOG = false;
 
+    /**
+     * Column names of tables, keyed by database and table name.
+     */
+    private static final Map<String, Set<String>> sColumns = new ConcurrentHashMap<>();
+
     private DatabaseManager() {
         throw new AssertionError("Instance is not allowed.");
     } // DatabaseManager
@@ -37,13 +50,23 @@ public class DatabaseManager {
      * @return id - insert id of new record
      */
     public static long insert(String tableName, @NonNull ContentValues values) {
+        return insert(DatabaseConnection.DEFAULT_DATABASE, tableName, values);
+    } // insert
+
+    /**
+     * Same as {@link DatabaseManager#insert(String, ContentValues)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static long insert(String database, String tableName, @NonNull ContentValues values) {
         if (LOG) {
             log("insert -> %s -> size[%s]", tableName, values.size());
         }
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         long insertId = db.insertWithOnConflict(tableName, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
+        TableObserver.notifyChanged(database, tableName);
         return insertId;
     } // insertOrUpdate
 
@@ -56,17 +79,42 @@ public class DatabaseManager {
      * @param insertCallback callback to get values to be inserted in the table
      */
     public static void insert(String tableName, int size, @NonNull InsertCallback insertCallback) {
+        insert(DatabaseConnection.DEFAULT_DATABASE, tableName, size, insertCallback);
+    } // insert
+
+    /**
+     * Same as {@link DatabaseManager#insert(String, int, InsertCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void insert(String database, String tableName, int size, @NonNull InsertCallback insertCallback) {
         if (LOG) {
             log("insert -> %s size[%d]", tableName, size);
         }
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
-        for (int i = 0; i < size; i++) {
-            db.insertWithOnConflict(tableName, null, insertCallback.getValues(i), SQLiteDatabase.CONFLICT_REPLACE);
-        }
-        DatabaseConnection.closeConnection();
+        insertRows(database, tableName, size, insertCallback);
     } // insertOrUpdate
 
+    /**
+     * Insert rows in a single transaction, so they are written with one journal
+     * sync instead of one per row, and either all or none of them are written.
+     */
+    private static void insertRows(String database, String tableName, int size, InsertCallback insertCallback) {
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < size; i++) {
+                db.insertWithOnConflict(tableName, null, insertCallback.getValues(i), SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            DatabaseConnection.closeConnection(database);
+        }
+        TableObserver.notifyChanged(database, tableName);
+        DatabaseStatistics.onRowsWritten(database, tableName, size);
+    } // insertRows
+
     /**
      * Execute raw query on table and return data.
      *
@@ -74,22 +122,59 @@ public class DatabaseManager {
      * @param cursorCallback callback for passing Data to caller
      */
     public static void queryRaw(String query, @NonNull CursorCallback cursorCallback) {
+        queryRaw(DatabaseConnection.DEFAULT_DATABASE, query, cursorCallback);
+    } // queryRaw
 
+    /**
+     * Same as {@link DatabaseManager#queryRaw(String, CursorCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void queryRaw(String database, String query, @NonNull CursorCallback cursorCallback) {
+        queryRaw(database, query, null, cursorCallback);
+    } // queryRaw
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
-        Cursor cursor = db.rawQuery(query, null);
-        if (cursor.moveToFirst()) {
-            do {
-                cursorCallback.fetchData(cursor);
-            } while (cursor.moveToNext());
+    /**
+     * <p>Execute raw query with arguments on a named database. Tables of databases attached
+     * with {@link DatabaseConnection#attach(String, String, String)} can be referred to as
+     * <code>alias.table</code> in the query.</p>
+     *
+     * @param database       name of the database registered with {@link DatabaseConnection}
+     * @param query          query to be executed
+     * @param selectionArgs  arguments for the query
+     * @param cursorCallback callback for passing Data to caller
+     */
+    public static void queryRaw(String database, String query, String[] selectionArgs, @NonNull CursorCallback cursorCallback) {
+
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        try {
+            Cursor cursor = db.rawQuery(query, selectionArgs);
+            try {
+                if (cursor.moveToFirst()) {
+                    do {
+                        cursorCallback.fetchData(cursor);
+                    } while (cursor.moveToNext());
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            DatabaseConnection.closeConnection(database);
         }
-        cursor.close();
-        DatabaseConnection.closeConnection();
-    } // update
+    } // queryRaw
 
     public static void insertAsync(final String tableName, final int size, @NonNull final InsertCallback insertCallback) {
+        insertAsync(DatabaseConnection.DEFAULT_DATABASE, tableName, size, insertCallback);
+    } // insertAsync
 
-        DbUtils.run(new Runnable() {
+    /**
+     * Same as {@link DatabaseManager#insertAsync(String, int, InsertCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void insertAsync(final String database, final String tableName, final int size, @NonNull final InsertCallback insertCallback) {
+
+        DbUtils.run(database, new Runnable() {
             @Override
             public void run() {
 
@@ -97,12 +182,7 @@ public class DatabaseManager {
                     log("insertAsync -> %s size[%d]", tableName, size);
                 }
 
-                SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
-                for (int i = 0; i < size; i++) {
-                    db.insertWithOnConflict(tableName, null, insertCallback.getValues(i), SQLiteDatabase.CONFLICT_REPLACE);
-                }
-                DatabaseConnection.closeConnection();
-
+                insertRows(database, tableName, size, insertCallback);
             }
         });
 
@@ -116,13 +196,23 @@ public class DatabaseManager {
      * @return effected row
      */
     public static int update(String tableName, @NonNull ContentValues values) {
+        return update(DatabaseConnection.DEFAULT_DATABASE, tableName, values);
+    } // update
+
+    /**
+     * Same as {@link DatabaseManager#update(String, ContentValues)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static int update(String database, String tableName, @NonNull ContentValues values) {
         if (LOG) {
             log("update -> %s %s", tableName, values.toString());
         }
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         int effectedRow = db.updateWithOnConflict(tableName, values, null, null, SQLiteDatabase.CONFLICT_REPLACE);
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
+        TableObserver.notifyChanged(database, tableName);
         return effectedRow;
     } // update
 
@@ -136,13 +226,23 @@ public class DatabaseManager {
      * @return int rows effected.
      */
     public static int update(String tableName, ContentValues values, String whereClause, String... whereArgs) {
+        return update(DatabaseConnection.DEFAULT_DATABASE, tableName, values, whereClause, whereArgs);
+    } // update
+
+    /**
+     * Same as {@link DatabaseManager#update(String, ContentValues, String, String...)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static int update(String database, String tableName, ContentValues values, String whereClause, String... whereArgs) {
         if (LOG) {
             log("update -> %s %s %s %s", tableName, values.toString(), whereClause, Arrays.toString(whereArgs));
         }
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         int effectedRow = db.updateWithOnConflict(tableName, values, whereClause, whereArgs, SQLiteDatabase.CONFLICT_REPLACE);
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
+        TableObserver.notifyChanged(database, tableName);
 
         return effectedRow;
     } // update
@@ -154,8 +254,17 @@ public class DatabaseManager {
      * @param cursorCallback callback for passing Data to caller
      */
     public static void query(String tableName, @NonNull CursorCallback cursorCallback) {
+        query(DatabaseConnection.DEFAULT_DATABASE, tableName, cursorCallback);
+    } // query
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+    /**
+     * Same as {@link DatabaseManager#query(String, CursorCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void query(String database, String tableName, @NonNull CursorCallback cursorCallback) {
+
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         Cursor cursor = db.query(tableName, null, null, null, null, null, null);
         if (cursor.moveToFirst()) {
             do {
@@ -168,7 +277,7 @@ public class DatabaseManager {
         }
 
         cursor.close();
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
     } // update
 
 
@@ -180,8 +289,17 @@ public class DatabaseManager {
      * @param cursorCallback callback for passing Data to caller
      */
     public static void queryLimited(String tableName, String limit, SortOrder sortOrder, String column, @NonNull CursorCallback cursorCallback) {
+        queryLimited(DatabaseConnection.DEFAULT_DATABASE, tableName, limit, sortOrder, column, cursorCallback);
+    } // queryLimited
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+    /**
+     * Same as {@link DatabaseManager#queryLimited(String, String, SortOrder, String, CursorCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void queryLimited(String database, String tableName, String limit, SortOrder sortOrder, String column, @NonNull CursorCallback cursorCallback) {
+
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         Cursor cursor = db.query(tableName, null, null, null, null, null, String.format("%s %s", column, sortOrder), limit);
         if (cursor.moveToFirst()) {
             do {
@@ -194,7 +312,7 @@ public class DatabaseManager {
         }
 
         cursor.close();
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
     } // update
 
 
@@ -207,8 +325,17 @@ public class DatabaseManager {
      * @see SortOrder
      */
     public static void query(String tableName, String column, String sortOrder, @NonNull CursorCallback cursorCallback) {
+        query(DatabaseConnection.DEFAULT_DATABASE, tableName, column, sortOrder, cursorCallback);
+    } // query
+
+    /**
+     * Same as {@link DatabaseManager#query(String, String, String, CursorCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void query(String database, String tableName, String column, String sortOrder, @NonNull CursorCallback cursorCallback) {
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         Cursor cursor = db.query(tableName, null, null, null, null, null, String.format("%s %s", column, sortOrder));
         if (cursor.moveToFirst()) {
             do {
@@ -221,7 +348,7 @@ public class DatabaseManager {
         }
 
         cursor.close();
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
     } // update
 
     /**
@@ -234,23 +361,27 @@ public class DatabaseManager {
      * @param idValue   record id value
      */
     public static void updateColumn(String tableName, String column, String colValue, String idColumn, String idValue) {
+        updateColumn(DatabaseConnection.DEFAULT_DATABASE, tableName, column, colValue, idColumn, idValue);
+    } // updateColumn
+
+    /**
+     * Same as {@link DatabaseManager#updateColumn(String, String, String, String, String)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void updateColumn(String database, String tableName, String column, String colValue, String idColumn, String idValue) {
         if (LOG) {
             log("updateColumn -> %s col[%s, %s], id[%s, %s]", tableName, column, colValue, idColumn, idValue);
         }
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        ContentValues values = new ContentValues();
+        values.put(column, colValue);
 
-        /**
-         * This query is vulnerable and will be replaced with safe query
-         * in future versions.
-         *  - allaudin
-         */
-
-        // TODO: 2017-02-02 replace with safe query
-        String query = String.format("UPDATE %s SET %s=? WHERE %s=?", tableName, column, idColumn);
-        db.rawQuery(query, new String[]{colValue, idValue});
-        DatabaseConnection.closeConnection();
-    }
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        db.update(tableName, values, idColumn + "=?", new String[]{idValue});
+        DatabaseConnection.closeConnection(database);
+        TableObserver.notifyChanged(database, tableName);
+    } // updateColumn
 
     /**
      * Query a table with given criteria specified in where clause.
@@ -261,9 +392,18 @@ public class DatabaseManager {
      * @param cursorCallback callback for passing Data to caller
      */
     public static void query(String tableName, String selection, String[] selectionArgs, @NonNull CursorCallback cursorCallback) {
+        query(DatabaseConnection.DEFAULT_DATABASE, tableName, selection, selectionArgs, cursorCallback);
+    } // query
+
+    /**
+     * Same as {@link DatabaseManager#query(String, String, String[], CursorCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void query(String database, String tableName, String selection, String[] selectionArgs, @NonNull CursorCallback cursorCallback) {
 
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         Cursor cursor = db.query(tableName, null, selection, selectionArgs, null, null, null);
         if (cursor.moveToFirst()) {
             do {
@@ -275,7 +415,7 @@ public class DatabaseManager {
             log("query -> %s selection[%s]  args %s , records [%d]", tableName, selection, Arrays.toString(selectionArgs), cursor.getCount());
         }
         cursor.close();
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
     } // update
 
 
@@ -288,9 +428,18 @@ public class DatabaseManager {
      * @param cursorCallback callback for passing Data to caller
      */
     public static void queryUnique(String tableName, String selection, String[] selectionArgs, String groupBy, @NonNull CursorCallback cursorCallback) {
+        queryUnique(DatabaseConnection.DEFAULT_DATABASE, tableName, selection, selectionArgs, groupBy, cursorCallback);
+    } // queryUnique
+
+    /**
+     * Same as {@link DatabaseManager#queryUnique(String, String, String[], String, CursorCallback)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void queryUnique(String database, String tableName, String selection, String[] selectionArgs, String groupBy, @NonNull CursorCallback cursorCallback) {
 
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         Cursor cursor = db.query(tableName, null, selection, selectionArgs, groupBy, null, null, null);
         if (cursor.moveToFirst()) {
             do {
@@ -302,7 +451,7 @@ public class DatabaseManager {
             log("query -> %s selection[%s]  args %s , records [%d]", tableName, selection, Arrays.toString(selectionArgs), cursor.getCount());
         }
         cursor.close();
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
     } // update
 
     /**
@@ -311,13 +460,23 @@ public class DatabaseManager {
      * @param tableName table to be cleared
      */
     public static void deleteAll(String tableName) {
+        deleteAll(DatabaseConnection.DEFAULT_DATABASE, tableName);
+    } // deleteAll
+
+    /**
+     * Same as {@link DatabaseManager#deleteAll(String)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void deleteAll(String database, String tableName) {
         if (LOG) {
             log("deleteAll -> %s", tableName);
         }
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         db.delete(tableName, null, null);
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
+        TableObserver.notifyChanged(database, tableName);
     } // deleteAll
 
     /**
@@ -328,15 +487,47 @@ public class DatabaseManager {
      * @param whereArgs   argumetns for where clause
      */
     public static void delete(String tableName, String whereClause, String... whereArgs) {
+        delete(DatabaseConnection.DEFAULT_DATABASE, tableName, whereClause, whereArgs);
+    } // delete
+
+    /**
+     * Same as {@link DatabaseManager#delete(String, String, String...)} on a named database.
+     * Arguments are taken as an array to keep this overload apart from the varargs one.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static int delete(String database, String tableName, String whereClause, String[] whereArgs) {
         if (LOG) {
             log("delete -> %s where[%s] args %s", tableName, whereClause, Arrays.toString(whereArgs));
         }
 
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
-        db.delete(tableName, whereClause, whereArgs);
-        DatabaseConnection.closeConnection();
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        int deleted = db.delete(tableName, whereClause, whereArgs);
+        DatabaseConnection.closeConnection(database);
+        TableObserver.notifyChanged(database, tableName);
+        return deleted;
     } // delete
 
+    /**
+     * Count rows of a table matching given criteria.
+     *
+     * @param database      name of the database registered with {@link DatabaseConnection}
+     * @param tableName     table to count
+     * @param selection     where clause, null for all rows
+     * @param selectionArgs arguments for where clause
+     * @return number of matching rows
+     */
+    public static long count(String database, String tableName, String selection, String[] selectionArgs) {
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        long count = DatabaseUtils.queryNumEntries(db, tableName, selection, selectionArgs);
+        DatabaseConnection.closeConnection(database);
+
+        if (LOG) {
+            log("count -> %s selection[%s] args %s, records[%d]", tableName, selection, Arrays.toString(selectionArgs), count);
+        }
+        return count;
+    } // count
+
     /**
      * Delete all recods where key column matches a value in <em>in clause</em>
      *
@@ -345,11 +536,210 @@ public class DatabaseManager {
      * @param inClause  in clause for where query
      */
     public static void deleteRaw(String tableName, String keyCol, String inClause) {
-        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection();
+        deleteRaw(DatabaseConnection.DEFAULT_DATABASE, tableName, keyCol, inClause);
+    } // deleteRaw
+
+    /**
+     * Same as {@link DatabaseManager#deleteRaw(String, String, String)} on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void deleteRaw(String database, String tableName, String keyCol, String inClause) {
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
         db.execSQL(String.format("DELETE FROM %s WHERE %s IN ( %s )", tableName, keyCol, inClause));
-        DatabaseConnection.closeConnection();
+        DatabaseConnection.closeConnection(database);
+        TableObserver.notifyChanged(database, tableName);
     } // delete
 
+    /**
+     * <p>Read rows from the table ordered by given {@link SortSpec}. The spec is
+     * validated against the table schema before the query is run.</p>
+     *
+     * @param database       name of the database registered with {@link DatabaseConnection}
+     * @param tableName      table to query
+     * @param sortSpec       order of returned records
+     * @param limit          limit clause, null for all records
+     * @param cursorCallback callback for passing Data to caller
+     */
+    public static void querySorted(String database, String tableName, @NonNull SortSpec sortSpec, String limit, @NonNull CursorCallback cursorCallback) {
+        sortSpec.validate(tableName, getColumns(database, tableName));
+
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        Cursor cursor = db.query(tableName, null, null, null, null, null, sortSpec.toSql(), limit);
+        if (cursor.moveToFirst()) {
+            do {
+                cursorCallback.fetchData(cursor);
+            } while (cursor.moveToNext());
+        }
+
+        if (LOG) {
+            log("querySorted -> %s, orderBy[%s], records[%d], limit[%s]", tableName, sortSpec, cursor.getCount(), limit);
+        }
+
+        cursor.close();
+        DatabaseConnection.closeConnection(database);
+    } // querySorted
+
+    /**
+     * <p>Read rows matching given criteria in chunks of <em>chunkSize</em> rows ordered
+     * by <code>rowid</code>. Memory used by the cursor is bounded by the chunk size,
+     * and values of <em>largeColumns</em> are read in pieces so a single oversized row
+     * can not overflow the cursor window.</p>
+     *
+     * @param database       name of the database registered with {@link DatabaseConnection}
+     * @param tableName      table to query, must have a rowid
+     * @param selection      where clause, null for all rows
+     * @param selectionArgs  arguments for where clause
+     * @param chunkSize      rows read per query
+     * @param largeColumns   TEXT/BLOB columns which may hold oversized values
+     * @param cursorCallback callback for passing Data to caller
+     * @return number of rows read
+     * @see ChunkedQuery
+     */
+    public static int queryChunked(String database, String tableName, String selection, String[] selectionArgs,
+                                   @IntRange(from = 1) int chunkSize, @NonNull Set<String> largeColumns, @NonNull CursorCallback cursorCallback) {
+        Set<String> columns = getColumns(database, tableName);
+
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        int records;
+        try {
+            records = new ChunkedQuery(db, tableName, columns, selection, selectionArgs, chunkSize, largeColumns).run(cursorCallback);
+        } finally {
+            DatabaseConnection.closeConnection(database);
+        }
+
+        if (LOG) {
+            log("queryChunked -> %s selection[%s] args %s, chunk[%d], records[%d]", tableName, selection, Arrays.toString(selectionArgs), chunkSize, records);
+        }
+        return records;
+    } // queryChunked
+
+    /**
+     * <p>Same as {@link DatabaseManager#queryChunked(String, String, String, String[], int, Set, CursorCallback)}
+     * for rows in any order. Rowids are read sorted first, then their rows in chunks, so
+     * the cursor holding full rows stays bounded by the chunk size.</p>
+     *
+     * @param orderBy order by clause without the keywords, null for <code>rowid</code> order
+     * @param limit   limit clause, null for all rows
+     * @see ChunkedQuery#runOrdered(String, String, CursorCallback)
+     */
+    public static int queryChunked(String database, String tableName, String selection, String[] selectionArgs, String orderBy, String limit,
+                                   @IntRange(from = 1) int chunkSize, @NonNull Set<String> largeColumns, @NonNull CursorCallback cursorCallback) {
+        if (orderBy == null && limit == null) {
+            return queryChunked(database, tableName, selection, selectionArgs, chunkSize, largeColumns, cursorCallback);
+        }
+
+        Set<String> columns = getColumns(database, tableName);
+
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        int records;
+        try {
+            ChunkedQuery query = new ChunkedQuery(db, tableName, columns, selection, selectionArgs, chunkSize, largeColumns);
+            records = query.runOrdered(orderBy == null ? "rowid" : orderBy, limit, cursorCallback);
+        } finally {
+            DatabaseConnection.closeConnection(database);
+        }
+
+        if (LOG) {
+            log("queryChunked -> %s selection[%s] args %s, orderBy[%s], limit[%s], chunk[%d], records[%d]",
+                    tableName, selection, Arrays.toString(selectionArgs), orderBy, limit, chunkSize, records);
+        }
+        return records;
+    } // queryChunked
+
+    /**
+     * <p>Returns column names of a table. Schema is read once with
+     * <code>PRAGMA table_info</code> and cached for the life of the process.</p>
+     *
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName table name
+     * @return unmodifiable set of column names, empty if table does not exist
+     */
+    @NonNull
+    public static Set<String> getColumns(String database, String tableName) {
+        String key = database + "." + tableName;
+        Set<String> columns = sColumns.get(key);
+        if (columns != null) {
+            return columns;
+        }
+
+        final Set<String> found = new HashSet<>();
+        queryRaw(database, String.format("PRAGMA table_info(%s)", tableName), new CursorCallback() {
+            @Override
+            public void fetchData(@NonNull Cursor cursor) {
+                found.add(cursor.getString(cursor.getColumnIndex("name")));
+            }
+        });
+
+        columns = Collections.unmodifiableSet(found);
+        if (!columns.isEmpty()) {
+            sColumns.put(key, columns);
+        }
+        return columns;
+    } // getColumns
+
+    /**
+     * Execute an <code>UPDATE</code> or <code>DELETE</code> statement on a named database.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @param sql      statement to be executed
+     * @param args     arguments for the statement
+     * @return number of rows changed
+     */
+    public static int executeUpdateDelete(String database, String sql, String... args) {
+        if (LOG) {
+            log("executeUpdateDelete -> %s args %s", sql, Arrays.toString(args));
+        }
+
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            statement.bindAllArgsAsStrings(args);
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+            DatabaseConnection.closeConnection(database);
+        }
+    } // executeUpdateDelete
+
+    /**
+     * Run a query returning a single number, e.g. a count or a <code>PRAGMA</code>.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @param sql      query to be executed
+     * @param args     arguments for the query
+     * @return value of first column of first row, 0 if there is no row
+     */
+    public static long longForQuery(String database, String sql, String... args) {
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        Cursor cursor = db.rawQuery(sql, args);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+            DatabaseConnection.closeConnection(database);
+        }
+    } // longForQuery
+
+    /**
+     * <p>Run callback inside a single transaction on a named database. Transaction
+     * is committed if callback returns normally and rolled back if it throws.</p>
+     *
+     * @param database            name of the database registered with {@link DatabaseConnection}
+     * @param transactionCallback work to be done in the transaction
+     */
+    public static void runInTransaction(String database, @NonNull TransactionCallback transactionCallback) {
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        db.beginTransaction();
+        try {
+            transactionCallback.execute(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            DatabaseConnection.closeConnection(database);
+        }
+    } // runInTransaction
+
     private static void log(String format, Object... args) {
         //Utility.log("DatabaseManager", String.format(format, args));
     } // log
@@ -368,6 +758,18 @@ public class DatabaseManager {
         ContentValues getValues(@IntRange int position);
     } // InsertCallback
 
+    /**
+     * <p>Executor running background work of a named database, e.g. for
+     * {@link DatabaseManager#insertAsync(String, String, int, InsertCallback)}.</p>
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @return executor of the database
+     */
+    @NonNull
+    public static Executor getExecutor(String database) {
+        return DbUtils.executor(database);
+    } // getExecutor
+
     /**
      * Callback for querying multiple row from the database. {@link DatabaseManager#query}
      * will iterate over cursor, passing the next cursor to {@link CursorCallback#fetchData(Cursor)}.
@@ -382,4 +784,13 @@ public class DatabaseManager {
         void fetchData(@NonNull Cursor cursor);
     } // CursorCallback
 
+    /**
+     * Callback for doing several operations in one transaction.
+     *
+     * @see {@link DatabaseManager#runInTransaction(String, TransactionCallback)}
+     */
+    public interface TransactionCallback {
+        void execute(@NonNull SQLiteDatabase db);
+    } // TransactionCallback
+
 } // DatabaseManager
@@ -0,0 +1,261 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * <p>A prebuilt, pre-indexed database file which can be installed in place of
+ * an empty database on first launch, so {@link SQLiteHelper#onCreate} and the
+ * initial row by row download are replaced by a single file copy.</p>
+ * <p>
+ * <p>{@link DatabaseSnapshot#install(Context, String, CatchUp)} must be called
+ * <b>before</b> the database is opened through {@link DatabaseConnection}. The
+ * snapshot is streamed to a temporary file, its checksum and SQLite header are
+ * verified and only then it is renamed into place. The <code>user_version</code>
+ * stored in the snapshot must be equal to the version passed to
+ * {@link SQLiteHelper#newInstance}, otherwise the helper would upgrade (drop) it.</p>
+ * <p>
+ * <p>The sync token is stored as the {@link SyncState} cursor of every synced table of
+ * the snapshot before it is moved into place, so the first delta sync only fetches data
+ * newer than the snapshot. It can be started from {@link CatchUp#onInstalled(DatabaseSnapshot)}.</p>
+ */
+public final class DatabaseSnapshot {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] HEADER = "SQLite format 3\u0000".getBytes();
+    private static final int USER_VERSION_OFFSET = 60;
+
+    private final Source mSource;
+    private final int mVersion;
+    private final String mSha256;
+    private final String mSyncToken;
+    private final String[] mSyncedTables;
+
+    /**
+     * @param source       where snapshot bytes are read from
+     * @param version      schema version (<code>user_version</code>) of the snapshot
+     * @param sha256       expected hex encoded SHA-256 of the file, null to skip the check
+     * @param syncToken    server cursor the snapshot was built at, used for delta catch up
+     * @param syncedTables tables whose {@link SyncState} cursor is set to the sync token
+     */
+    public DatabaseSnapshot(@NonNull Source source, int version, @Nullable String sha256, @Nullable String syncToken, @NonNull String... syncedTables) {
+        mSource = source;
+        mVersion = version;
+        mSha256 = sha256;
+        mSyncToken = syncToken;
+        mSyncedTables = syncedTables.clone();
+    } // DatabaseSnapshot
+
+    /**
+     * @param ctx       context used to open assets
+     * @param assetName path of the snapshot in assets
+     * @return source reading from a packaged asset
+     */
+    @NonNull
+    public static Source fromAsset(@NonNull Context ctx, @NonNull final String assetName) {
+        final Context appContext = ctx.getApplicationContext();
+        return new Source() {
+            @NonNull
+            @Override
+            public InputStream open() throws IOException {
+                return appContext.getAssets().open(assetName);
+            }
+        };
+    } // fromAsset
+
+    /**
+     * @param file downloaded snapshot file
+     * @return source reading from a file
+     */
+    @NonNull
+    public static Source fromFile(@NonNull final File file) {
+        return new Source() {
+            @NonNull
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+        };
+    } // fromFile
+
+    public int getVersion() {
+        return mVersion;
+    }
+
+    @Nullable
+    public String getSyncToken() {
+        return mSyncToken;
+    }
+
+    /**
+     * <p>Install this snapshot as database file <em>name</em> if the database does
+     * not exist yet. Existing databases are never replaced.</p>
+     *
+     * @param ctx     context used to resolve the database path
+     * @param name    file name of the database, same as passed to {@link SQLiteHelper#newInstance}
+     * @param catchUp called after a successful install, may be null
+     * @return true if snapshot was installed, false if database already existed
+     * @throws IOException if snapshot could not be read, or failed verification
+     */
+    public boolean install(@NonNull Context ctx, @NonNull String name, @Nullable CatchUp catchUp) throws IOException {
+        File target = ctx.getDatabasePath(name);
+        if (target.exists()) {
+            return false;
+        }
+
+        File parent = target.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException(String.format("Unable to create [%s].", parent));
+        }
+
+        File temp = new File(parent, name + ".snapshot");
+        try {
+            String digest = copy(temp);
+            if (mSha256 != null && !mSha256.equalsIgnoreCase(digest)) {
+                throw new IOException(String.format("Checksum mismatch for [%s], expected [%s] found [%s].", name, mSha256, digest));
+            }
+
+            int version = readUserVersion(temp);
+            if (version != mVersion) {
+                throw new IOException(String.format(Locale.US, "Version mismatch for [%s], expected [%d] found [%d].", name, mVersion, version));
+            }
+
+            writeSyncState(temp);
+
+            // Stale journals from an earlier database with the same name would be replayed on the snapshot.
+            for (String suffix : new String[]{"-journal", "-wal", "-shm"}) {
+                new File(parent, name + suffix).delete();
+            }
+
+            if (!temp.renameTo(target)) {
+                throw new IOException(String.format("Unable to move snapshot to [%s].", target));
+            }
+        } finally {
+            temp.delete();
+        }
+
+        if (catchUp != null) {
+            catchUp.onInstalled(this);
+        }
+
+        return true;
+    } // install
+
+    /**
+     * Stream snapshot to given file, hashing it on the way.
+     *
+     * @return hex encoded SHA-256 of copied bytes
+     */
+    private String copy(File destination) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        InputStream in = mSource.open();
+        FileOutputStream out = new FileOutputStream(destination);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            in.close();
+            out.close();
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    } // copy
+
+    /**
+     * Store the sync token as cursor of every synced table, in the snapshot file before it
+     * is moved into place, so data and cursors are installed together.
+     */
+    private void writeSyncState(File file) throws IOException {
+        if (mSyncToken == null || mSyncedTables.length == 0) {
+            return;
+        }
+
+        SQLiteDatabase db;
+        try {
+            db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        } catch (SQLiteException e) {
+            throw new IOException(e);
+        }
+        try {
+            db.beginTransaction();
+            try {
+                for (String table : mSyncedTables) {
+                    SyncState.setCursor(db, table, mSyncToken);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            throw new IOException(String.format("Unable to store sync state in [%s].", file), e);
+        } finally {
+            db.close();
+        }
+    } // writeSyncState
+
+    /**
+     * Read <code>user_version</code> from the database header, this also
+     * verifies that file is an SQLite database.
+     */
+    private static int readUserVersion(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] header = new byte[HEADER.length];
+            raf.readFully(header);
+            if (!Arrays.equals(header, HEADER)) {
+                throw new IOException(String.format("[%s] is not an SQLite database.", file));
+            }
+            raf.seek(USER_VERSION_OFFSET);
+            return raf.readInt();
+        } finally {
+            raf.close();
+        }
+    } // readUserVersion
+
+    /**
+     * Provides snapshot bytes, a new stream is opened for every install attempt.
+     */
+    public interface Source {
+        @NonNull
+        InputStream open() throws IOException;
+    } // Source
+
+    /**
+     * Called once snapshot is in place, to fetch changes made after
+     * the snapshot was built.
+     */
+    public interface CatchUp {
+        void onInstalled(@NonNull DatabaseSnapshot snapshot);
+    } // CatchUp
+
+} // DatabaseSnapshot
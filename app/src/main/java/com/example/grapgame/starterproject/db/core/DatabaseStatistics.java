@@ -0,0 +1,392 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Keeps planner statistics of databases fresh and reports table sizes.</p>
+ * <p>
+ * <p>Without <code>ANALYZE</code> SQLite knows nothing about how selective an index is and
+ * may pick a poor one for queries with several predicates. Bulk writes report their table
+ * and row count with {@link DatabaseStatistics#onRowsWritten(String, String, long)}; once a
+ * database has seen more than {@link DatabaseStatistics#setAnalyzeThreshold(long)} rows since
+ * its last analysis, {@link DatabaseStatistics#optimize(String)} runs on a low priority thread.
+ * {@link DatabaseStatistics#schedule(String, long)} optimizes periodically instead.</p>
+ * <p>
+ * <p>{@link DatabaseStatistics#getDiagnostics(String)} returns row counts and index
+ * statistics per table. Table and index sizes in bytes need the <code>dbstat</code>
+ * virtual table, which most Android builds of SQLite omit; they are -1 then.</p>
+ */
+public final class DatabaseStatistics {
+
+    private static final long DEFAULT_ANALYZE_THRESHOLD = 1000;
+
+    /**
+     * First SQLite release whose <code>PRAGMA optimize</code> takes mask 0x10000, which checks
+     * every table. Older releases only check tables the planner used on the same connection.
+     */
+    private static final int OPTIMIZE_ALL_TABLES_VERSION = 3046000;
+
+    private static final ConcurrentMap<String, AtomicLong> sWrittenRows = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Set<String>> sWrittenTables = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> sSqliteVersions = new ConcurrentHashMap<>();
+    private static final Map<String, ScheduledFuture<?>> sSchedules = new ConcurrentHashMap<>();
+    private static final Map<String, Long> sLastAnalyzed = new ConcurrentHashMap<>();
+
+    private static volatile long sAnalyzeThreshold = DEFAULT_ANALYZE_THRESHOLD;
+
+    private static final ScheduledExecutorService sExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "db-statistics");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private DatabaseStatistics() {
+        throw new AssertionError("Instance is not allowed.");
+    } // DatabaseStatistics
+
+    /**
+     * @param rows rows written to a database after which it is analyzed, 0 to disable
+     */
+    public static void setAnalyzeThreshold(long rows) {
+        sAnalyzeThreshold = rows;
+    } // setAnalyzeThreshold
+
+    /**
+     * Report rows inserted, updated or deleted by a bulk write.
+     *
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName table written
+     * @param rows      rows written
+     */
+    public static void onRowsWritten(@NonNull final String database, @NonNull String tableName, long rows) {
+        writtenTables(database).add(tableName);
+
+        AtomicLong written = sWrittenRows.get(database);
+        if (written == null) {
+            sWrittenRows.putIfAbsent(database, new AtomicLong());
+            written = sWrittenRows.get(database);
+        }
+
+        long threshold = sAnalyzeThreshold;
+        if (threshold > 0 && written.addAndGet(rows) >= threshold) {
+            written.set(0);
+            sExecutor.execute(new OptimizeTask(database));
+        }
+    } // onRowsWritten
+
+    /**
+     * Optimize a database every interval on a low priority thread.
+     *
+     * @param database       name of the database registered with {@link DatabaseConnection}
+     * @param intervalMillis time between runs
+     */
+    public static void schedule(@NonNull String database, long intervalMillis) {
+        cancel(database);
+        sSchedules.put(database, sExecutor.scheduleWithFixedDelay(new OptimizeTask(database), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS));
+    } // schedule
+
+    public static void cancel(@NonNull String database) {
+        ScheduledFuture<?> future = sSchedules.remove(database);
+        if (future != null) {
+            future.cancel(false);
+        }
+    } // cancel
+
+    /**
+     * <p>Gather statistics of every table and index with <code>ANALYZE</code>, on
+     * calling thread. Reads every index, so it can take a while on large tables.</p>
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void analyze(@NonNull String database) {
+        DatabaseManager.longForQuery(database, "ANALYZE");
+        sLastAnalyzed.put(database, System.currentTimeMillis());
+    } // analyze
+
+    /**
+     * <p>Gather statistics of some tables with <code>ANALYZE table</code>, on calling
+     * thread, over one connection.</p>
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @param tables   tables to be analyzed
+     */
+    public static void analyze(@NonNull String database, @NonNull Collection<String> tables) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        try {
+            for (String table : tables) {
+                db.execSQL("ANALYZE " + table);
+            }
+        } finally {
+            DatabaseConnection.closeConnection(database);
+        }
+        sLastAnalyzed.put(database, System.currentTimeMillis());
+    } // analyze
+
+    /**
+     * <p>Bring statistics of tables written since the last run up to date, on calling
+     * thread. Runs <code>PRAGMA optimize=0x10002</code> on SQLite 3.46 and newer, which
+     * analyzes every table whose statistics are stale. Older releases only look at tables
+     * the planner used on the same connection, and a connection is closed once idle, so
+     * the pragma would run on a fresh connection and do nothing; tables reported by
+     * {@link DatabaseStatistics#onRowsWritten} are analyzed one by one instead.</p>
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void optimize(@NonNull String database) {
+        List<String> tables = drainWrittenTables(database);
+        try {
+            if (getSqliteVersion(database) >= OPTIMIZE_ALL_TABLES_VERSION) {
+                DatabaseManager.longForQuery(database, "PRAGMA optimize=0x10002");
+                sLastAnalyzed.put(database, System.currentTimeMillis());
+            } else {
+                analyze(database, tables);
+            }
+        } catch (RuntimeException e) {
+            writtenTables(database).addAll(tables);
+            throw e;
+        }
+    } // optimize
+
+    /**
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @return time of last analysis in this process, 0 if never
+     */
+    public static long getLastAnalyzed(@NonNull String database) {
+        Long time = sLastAnalyzed.get(database);
+        return time == null ? 0 : time;
+    } // getLastAnalyzed
+
+    /**
+     * Collect row counts, index statistics and page usage of every table.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @return diagnostics of the database
+     */
+    @NonNull
+    public static Diagnostics getDiagnostics(@NonNull String database) {
+        final Map<String, List<String>> indexes = new HashMap<>();
+        final List<String> tables = new ArrayList<>();
+        DatabaseManager.queryRaw(database, "SELECT type, name, tbl_name FROM sqlite_master WHERE type IN ('table', 'index') AND name NOT LIKE 'sqlite_%' ORDER BY name",
+                new DatabaseManager.CursorCallback() {
+                    @Override
+                    public void fetchData(@NonNull Cursor cursor) {
+                        if ("table".equals(cursor.getString(0))) {
+                            tables.add(cursor.getString(1));
+                        } else {
+                            listOf(indexes, cursor.getString(2)).add(cursor.getString(1));
+                        }
+                    }
+                });
+
+        Map<String, String> stats = readStats(database);
+        Map<String, Long> sizes = readSizes(database);
+
+        List<TableStats> tableStats = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            List<IndexStats> indexStats = new ArrayList<>();
+            for (String index : listOf(indexes, table)) {
+                indexStats.add(new IndexStats(index, stats.get(index), sizeOf(sizes, index)));
+            }
+            long rows = DatabaseManager.count(database, table, null, null);
+            tableStats.add(new TableStats(table, rows, sizeOf(sizes, table), Collections.unmodifiableList(indexStats)));
+        }
+
+        return new Diagnostics(DatabaseVacuum.getSpaceInfo(database), getLastAnalyzed(database), Collections.unmodifiableList(tableStats));
+    } // getDiagnostics
+
+    /**
+     * @return <code>stat</code> column of <code>sqlite_stat1</code> keyed by index, empty if never analyzed
+     */
+    private static Map<String, String> readStats(String database) {
+        final Map<String, String> stats = new HashMap<>();
+        if (DatabaseManager.longForQuery(database, "SELECT count(*) FROM sqlite_master WHERE name = 'sqlite_stat1'") == 0) {
+            return stats;
+        }
+        DatabaseManager.queryRaw(database, "SELECT idx, stat FROM sqlite_stat1 WHERE idx IS NOT NULL", new DatabaseManager.CursorCallback() {
+            @Override
+            public void fetchData(@NonNull Cursor cursor) {
+                stats.put(cursor.getString(0), cursor.getString(1));
+            }
+        });
+        return stats;
+    } // readStats
+
+    /**
+     * @return bytes used by every table and index, empty if dbstat is not available
+     */
+    private static Map<String, Long> readSizes(String database) {
+        final Map<String, Long> sizes = new HashMap<>();
+        try {
+            DatabaseManager.queryRaw(database, "SELECT name, sum(pgsize) FROM dbstat GROUP BY name", new DatabaseManager.CursorCallback() {
+                @Override
+                public void fetchData(@NonNull Cursor cursor) {
+                    sizes.put(cursor.getString(0), cursor.getLong(1));
+                }
+            });
+        } catch (SQLiteException e) {
+            // SQLite built without dbstat, sizes stay unknown.
+        }
+        return sizes;
+    } // readSizes
+
+    private static Set<String> writtenTables(String database) {
+        Set<String> tables = sWrittenTables.get(database);
+        if (tables == null) {
+            sWrittenTables.putIfAbsent(database, Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+            tables = sWrittenTables.get(database);
+        }
+        return tables;
+    } // writtenTables
+
+    private static List<String> drainWrittenTables(String database) {
+        Set<String> written = writtenTables(database);
+        List<String> tables = new ArrayList<>(written);
+        written.removeAll(tables);
+        return tables;
+    } // drainWrittenTables
+
+    private static long sizeOf(Map<String, Long> sizes, String name) {
+        Long size = sizes.get(name);
+        return size == null ? -1 : size;
+    } // sizeOf
+
+    private static List<String> listOf(Map<String, List<String>> map, String key) {
+        List<String> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        return list;
+    } // listOf
+
+    /**
+     * @return version as a number, e.g. 3018000 for 3.18.0, read once per database
+     */
+    private static int getSqliteVersion(String database) {
+        Integer cached = sSqliteVersions.get(database);
+        if (cached != null) {
+            return cached;
+        }
+        final int[] version = new int[1];
+        DatabaseManager.queryRaw(database, "SELECT sqlite_version()", new DatabaseManager.CursorCallback() {
+            @Override
+            public void fetchData(@NonNull Cursor cursor) {
+                String[] parts = cursor.getString(0).split("\\.");
+                for (int i = 0; i < 3; i++) {
+                    version[0] = version[0] * 1000 + (i < parts.length ? Integer.parseInt(parts[i]) : 0);
+                }
+            }
+        });
+        sSqliteVersions.put(database, version[0]);
+        return version[0];
+    } // getSqliteVersion
+
+    private static final class OptimizeTask implements Runnable {
+        final String database;
+
+        OptimizeTask(String database) {
+            this.database = database;
+        }
+
+        @Override
+        public void run() {
+            try {
+                optimize(database);
+            } catch (RuntimeException e) {
+                // Database busy or closed, next bulk write or run retries.
+            }
+        }
+    } // OptimizeTask
+
+    /**
+     * Statistics of a whole database.
+     */
+    public static final class Diagnostics {
+        public final DatabaseVacuum.SpaceInfo space;
+        public final long lastAnalyzed;
+        public final List<TableStats> tables;
+
+        Diagnostics(DatabaseVacuum.SpaceInfo space, long lastAnalyzed, List<TableStats> tables) {
+            this.space = space;
+            this.lastAnalyzed = lastAnalyzed;
+            this.tables = tables;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s analyzed[%d] tables%s", space, lastAnalyzed, tables);
+        }
+    } // Diagnostics
+
+    /**
+     * Statistics of one table, bytes are -1 when unknown.
+     */
+    public static final class TableStats {
+        public final String name;
+        public final long rows;
+        public final long bytes;
+        public final List<IndexStats> indexes;
+
+        TableStats(String name, long rows, long bytes, List<IndexStats> indexes) {
+            this.name = name;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.indexes = indexes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s rows[%d] bytes[%d] indexes%s", name, rows, bytes, indexes);
+        }
+    } // TableStats
+
+    /**
+     * Statistics of one index. <em>stat</em> is the <code>sqlite_stat1</code> entry: rows in
+     * the index followed by average rows per distinct value of each leading column, null if
+     * the index was never analyzed. Bytes are -1 when unknown.
+     */
+    public static final class IndexStats {
+        public final String name;
+        public final String stat;
+        public final long bytes;
+
+        IndexStats(String name, String stat, long bytes) {
+            this.name = name;
+            this.stat = stat;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s stat[%s] bytes[%d]", name, stat, bytes);
+        }
+    } // IndexStats
+
+} // DatabaseStatistics
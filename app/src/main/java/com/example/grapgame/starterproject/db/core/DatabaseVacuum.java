@@ -0,0 +1,269 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Returns pages freed by deletes to the file system. SQLite keeps freed pages in
+ * the file's freelist forever unless the database is vacuumed, so after a few bulk
+ * deletes most of the file can be free space.</p>
+ * <p>
+ * <p>{@link DatabaseVacuum#scheduleIdle} checks the freelist periodically and, while no
+ * thread uses the database, runs <code>incremental_vacuum</code> in small bounded steps
+ * until the freelist is below the threshold. Bulk deletes call
+ * {@link DatabaseVacuum#onBulkDelete(String)} to bring the next check forward.
+ * Incremental steps require <code>auto_vacuum=INCREMENTAL</code> (see {@link DatabaseConfig});
+ * {@link DatabaseVacuum#compact(String)} does a full <code>VACUUM</code> and converts a
+ * database without auto vacuum on the way.</p>
+ */
+public final class DatabaseVacuum {
+
+    private static final long STEP_PAUSE_MILLIS = 50;
+    private static final int MAX_STEPS_PER_RUN = 20;
+
+    private static final Map<String, Schedule> sSchedules = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService sExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "db-vacuum");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private DatabaseVacuum() {
+        throw new AssertionError("Instance is not allowed.");
+    } // DatabaseVacuum
+
+    /**
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @return current page usage of the database
+     */
+    @NonNull
+    public static SpaceInfo getSpaceInfo(@NonNull String database) {
+        // Held so the pragmas below share one connection instead of each opening its own.
+        DatabaseConnection.getAndOpenConnection(database);
+        try {
+            return new SpaceInfo(
+                    DatabaseManager.longForQuery(database, "PRAGMA page_size"),
+                    DatabaseManager.longForQuery(database, "PRAGMA page_count"),
+                    DatabaseManager.longForQuery(database, "PRAGMA freelist_count"),
+                    (int) DatabaseManager.longForQuery(database, "PRAGMA auto_vacuum"));
+        } finally {
+            DatabaseConnection.closeConnection(database);
+        }
+    } // getSpaceInfo
+
+    /**
+     * Return at most <em>maxPages</em> free pages to the file system.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @param maxPages pages to free in this step
+     * @return pages freed, always 0 unless auto vacuum is incremental
+     */
+    public static long incrementalStep(@NonNull String database, int maxPages) {
+        DatabaseConnection.getAndOpenConnection(database);
+        try {
+            long before = DatabaseManager.longForQuery(database, "PRAGMA freelist_count");
+            DatabaseManager.longForQuery(database, String.format(Locale.US, "PRAGMA incremental_vacuum(%d)", maxPages));
+            return Math.max(0, before - DatabaseManager.longForQuery(database, "PRAGMA freelist_count"));
+        } finally {
+            DatabaseConnection.closeConnection(database);
+        }
+    } // incrementalStep
+
+    /**
+     * <p>Rebuild the whole database file with <code>VACUUM</code>, switching it to
+     * incremental auto vacuum if it has none. Needs free disk space as large as the
+     * database and blocks every other user of it, so run it rarely and off the UI path.</p>
+     * <p>
+     * <p>SQLite only changes the auto vacuum mode of an existing database when a
+     * <code>VACUUM</code> follows on the same connection, so both statements run on
+     * one held connection.</p>
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     * @return file size before and after
+     * @throws IllegalStateException if the database is still without auto vacuum afterwards
+     */
+    @NonNull
+    public static Compaction compact(@NonNull String database) {
+        SQLiteDatabase db = DatabaseConnection.getAndOpenConnection(database);
+        try {
+            SpaceInfo before = getSpaceInfo(database);
+            if (before.autoVacuum == SpaceInfo.AUTO_VACUUM_NONE) {
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            }
+            db.execSQL("VACUUM");
+
+            SpaceInfo after = getSpaceInfo(database);
+            if (after.autoVacuum == SpaceInfo.AUTO_VACUUM_NONE) {
+                throw new IllegalStateException(String.format("Auto vacuum of [%s] not changed by VACUUM.", database));
+            }
+            return new Compaction(before, after);
+        } finally {
+            DatabaseConnection.closeConnection(database);
+        }
+    } // compact
+
+    /**
+     * <p>Check freelist of a database every interval and vacuum it in steps while idle.</p>
+     *
+     * @param database       name of the database registered with {@link DatabaseConnection}
+     * @param intervalMillis time between checks
+     * @param maxFreeRatio   free pages to total pages ratio above which vacuum runs, e.g. 0.1
+     * @param pagesPerStep   pages freed per step, each step holds the write lock briefly
+     */
+    public static void scheduleIdle(@NonNull String database, long intervalMillis, float maxFreeRatio, int pagesPerStep) {
+        cancel(database);
+        Schedule schedule = new Schedule(database, maxFreeRatio, pagesPerStep);
+        schedule.future = sExecutor.scheduleWithFixedDelay(schedule, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        sSchedules.put(database, schedule);
+    } // scheduleIdle
+
+    public static void cancel(@NonNull String database) {
+        Schedule schedule = sSchedules.remove(database);
+        if (schedule != null) {
+            schedule.future.cancel(false);
+        }
+    } // cancel
+
+    /**
+     * Hint that many rows were just deleted, runs a check of a scheduled
+     * database soon instead of waiting for the interval.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void onBulkDelete(@NonNull String database) {
+        Schedule schedule = sSchedules.get(database);
+        if (schedule != null) {
+            sExecutor.schedule(schedule, STEP_PAUSE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    } // onBulkDelete
+
+    private static final class Schedule implements Runnable {
+        final String database;
+        final float maxFreeRatio;
+        final int pagesPerStep;
+        ScheduledFuture<?> future;
+
+        Schedule(String database, float maxFreeRatio, int pagesPerStep) {
+            this.database = database;
+            this.maxFreeRatio = maxFreeRatio;
+            this.pagesPerStep = pagesPerStep;
+        }
+
+        /**
+         * Holds one connection for the whole run, so checks and steps do not reopen the
+         * database. A step only runs while this run is the only user of the connection.
+         */
+        @Override
+        public void run() {
+            try {
+                if (!DatabaseConnection.isIdle(database)) {
+                    return;
+                }
+                DatabaseConnection.getAndOpenConnection(database);
+                try {
+                    vacuum();
+                } finally {
+                    DatabaseConnection.closeConnection(database);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Database busy or closed, next check retries.
+            }
+        }
+
+        private void vacuum() throws InterruptedException {
+            for (int step = 0; step < MAX_STEPS_PER_RUN; step++) {
+                if (DatabaseConnection.getUseCount(database) > 1) {
+                    return;
+                }
+
+                SpaceInfo info = getSpaceInfo(database);
+                if (info.autoVacuum != SpaceInfo.AUTO_VACUUM_INCREMENTAL || info.getFreeRatio() <= maxFreeRatio) {
+                    return;
+                }
+
+                if (incrementalStep(database, pagesPerStep) == 0) {
+                    return;
+                }
+                Thread.sleep(STEP_PAUSE_MILLIS);
+            }
+        }
+    } // Schedule
+
+    /**
+     * Page usage of a database file.
+     */
+    public static final class SpaceInfo {
+        public static final int AUTO_VACUUM_NONE = 0;
+        public static final int AUTO_VACUUM_FULL = 1;
+        public static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+        public final long pageSize;
+        public final long pageCount;
+        public final long freePages;
+        public final int autoVacuum;
+
+        SpaceInfo(long pageSize, long pageCount, long freePages, int autoVacuum) {
+            this.pageSize = pageSize;
+            this.pageCount = pageCount;
+            this.freePages = freePages;
+            this.autoVacuum = autoVacuum;
+        }
+
+        public long getFileBytes() {
+            return pageSize * pageCount;
+        }
+
+        public long getFreeBytes() {
+            return pageSize * freePages;
+        }
+
+        public float getFreeRatio() {
+            return pageCount == 0 ? 0 : (float) freePages / pageCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "size[%d] free[%d] pages[%d/%d] autoVacuum[%d]",
+                    getFileBytes(), getFreeBytes(), freePages, pageCount, autoVacuum);
+        }
+    } // SpaceInfo
+
+    /**
+     * File size before and after a full compaction.
+     */
+    public static final class Compaction {
+        public final SpaceInfo before;
+        public final SpaceInfo after;
+
+        Compaction(SpaceInfo before, SpaceInfo after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        public long getReclaimedBytes() {
+            return before.getFileBytes() - after.getFileBytes();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "before[%s] after[%s] reclaimed[%d]", before, after, getReclaimedBytes());
+        }
+    } // Compaction
+
+} // DatabaseVacuum
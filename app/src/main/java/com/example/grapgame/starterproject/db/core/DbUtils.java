@@ -1,5 +1,7 @@
 package com.example.grapgame.starterproject.db.core;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -10,10 +12,32 @@ import java.util.concurrent.Executors;
  */
 class DbUtils {
 
-    private static ExecutorService executorService = Executors.newFixedThreadPool(2);
+    /**
+     * One executor per database, so background work on one database
+     * never waits behind work queued for another.
+     */
+    private static final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
 
     public static void run(Runnable runnable) {
-        executorService.submit(runnable);
+        run(DatabaseConnection.DEFAULT_DATABASE, runnable);
+    }
+
+    public static void run(String database, Runnable runnable) {
+        executor(database).submit(runnable);
+    }
+
+    static ExecutorService executor(String database) {
+        ExecutorService executorService = executors.get(database);
+        if (executorService == null) {
+            synchronized (executors) {
+                executorService = executors.get(database);
+                if (executorService == null) {
+                    executorService = Executors.newFixedThreadPool(2);
+                    executors.put(database, executorService);
+                }
+            }
+        }
+        return executorService;
     }
 
 } // DbUtils
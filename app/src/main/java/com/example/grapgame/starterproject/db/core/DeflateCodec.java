@@ -0,0 +1,241 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>{@link ColumnCodec} compressing UTF-8 text with deflate, optionally primed with
+ * a preset dictionary. Feed values are short JSON fragments sharing keys and
+ * structure, which plain deflate can not exploit within a single value; a shared
+ * dictionary holding those common fragments is what makes small values compress.</p>
+ * <p>
+ * <p>Encoded values start with the dictionary id and are decoded with the dictionary
+ * registered under that id, so values written before a new dictionary was trained stay
+ * readable. Every codec registers its dictionary when created; dictionaries which are no
+ * longer used for writing must still be registered with
+ * {@link DeflateCodec#registerDictionary(byte, byte[])} as long as rows written with them
+ * exist. <b>The bytes of a dictionary can not be changed once values were written with
+ * it</b>, a new dictionary needs a new id.</p>
+ * <p>
+ * <p>Values shorter than {@link DeflateCodec#MIN_LENGTH} or which do not shrink are left
+ * as plain text.</p>
+ */
+public final class DeflateCodec implements ColumnCodec {
+
+    /**
+     * Values shorter than this (in chars) are not worth the deflate header.
+     */
+    public static final int MIN_LENGTH = 128;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static final Map<Byte, byte[]> sDictionaries = new ConcurrentHashMap<>();
+
+    private final byte mDictionaryId;
+    private final byte[] mDictionary;
+    private final int mLevel;
+
+    private final ThreadLocal<Deflater> mDeflater = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(mLevel);
+        }
+    };
+
+    private final ThreadLocal<Inflater> mInflater = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    /**
+     * Codec without a dictionary, id 0.
+     */
+    public DeflateCodec() {
+        this((byte) 0, null, Deflater.DEFAULT_COMPRESSION);
+    } // DeflateCodec
+
+    /**
+     * @param dictionaryId id stored with every value, must be unique per dictionary and non zero
+     * @param dictionary   preset dictionary, see {@link DeflateCodec#buildDictionary(List, int)}
+     * @param level        deflate level, 1 (fastest) to 9 (smallest)
+     */
+    public DeflateCodec(byte dictionaryId, @Nullable byte[] dictionary, int level) {
+        if (dictionary != null && dictionaryId == 0) {
+            throw new IllegalArgumentException("Dictionary id 0 is reserved for codec without dictionary.");
+        }
+        if (dictionary != null) {
+            registerDictionary(dictionaryId, dictionary);
+        }
+        mDictionaryId = dictionaryId;
+        mDictionary = dictionary;
+        mLevel = level;
+    } // DeflateCodec
+
+    /**
+     * Make values written with a dictionary decodable by every codec.
+     *
+     * @param dictionaryId id the values were written with, non zero
+     * @param dictionary   dictionary the values were written with
+     * @throws IllegalArgumentException if another dictionary is registered under the id
+     */
+    public static void registerDictionary(byte dictionaryId, @NonNull byte[] dictionary) {
+        if (dictionaryId == 0) {
+            throw new IllegalArgumentException("Dictionary id 0 is reserved for codec without dictionary.");
+        }
+        byte[] registered = sDictionaries.get(dictionaryId);
+        if (registered == null) {
+            registered = sDictionaries.putIfAbsent(dictionaryId, dictionary.clone());
+        }
+        if (registered != null && !Arrays.equals(registered, dictionary)) {
+            throw new IllegalArgumentException(String.format("Another dictionary is registered with id [%d].", dictionaryId));
+        }
+    } // registerDictionary
+
+    @Override
+    public byte[] encode(@NonNull String text) {
+        if (text.length() < MIN_LENGTH) {
+            return null;
+        }
+
+        byte[] input = utf8(text);
+        Deflater deflater = mDeflater.get();
+        deflater.reset();
+        if (mDictionary != null) {
+            deflater.setDictionary(mDictionary);
+        }
+        deflater.setInput(input);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+        out.write(mDictionaryId);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            out.write(buffer, 0, count);
+            if (out.size() >= input.length) {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    } // encode
+
+    @NonNull
+    @Override
+    public String decode(@NonNull byte[] encoded) {
+        if (encoded.length == 0) {
+            throw new IllegalArgumentException("Empty deflate value.");
+        }
+
+        byte[] dictionary = null;
+        if (encoded[0] != 0) {
+            dictionary = sDictionaries.get(encoded[0]);
+            if (dictionary == null) {
+                throw new IllegalArgumentException(String.format("Value was encoded with unknown dictionary [%d].", encoded[0]));
+            }
+        }
+
+        Inflater inflater = mInflater.get();
+        inflater.reset();
+        inflater.setInput(encoded, 1, encoded.length - 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length * 4);
+        byte[] buffer = new byte[4096];
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0) {
+                    if (inflater.needsDictionary() && dictionary != null) {
+                        inflater.setDictionary(dictionary);
+                    } else if (inflater.needsDictionary() || inflater.needsInput()) {
+                        throw new IllegalArgumentException("Truncated deflate value or missing dictionary.");
+                    }
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toString(UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt deflate value.", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    } // decode
+
+    /**
+     * <p>Build a preset dictionary from sample values. Samples are split on JSON
+     * punctuation and the fragments saving the most bytes (length times count)
+     * are kept. Deflate reaches the end of the dictionary most cheaply, so the
+     * most valuable fragments are placed last.</p>
+     *
+     * @param samples representative values, a few hundred is enough
+     * @param maxSize dictionary size in bytes, deflate uses at most 32 KB
+     * @return dictionary bytes
+     */
+    @NonNull
+    public static byte[] buildDictionary(@NonNull List<String> samples, int maxSize) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (String sample : samples) {
+            for (String fragment : sample.split("(?<=[,{}\\[\\]:])")) {
+                if (fragment.length() > 3) {
+                    Integer count = counts.get(fragment);
+                    counts.put(fragment, count == null ? 1 : count + 1);
+                }
+            }
+        }
+
+        List<String> fragments = new ArrayList<>(counts.keySet());
+        Collections.sort(fragments, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                long scoreA = (long) a.length() * counts.get(a);
+                long scoreB = (long) b.length() * counts.get(b);
+                return scoreA < scoreB ? 1 : (scoreA == scoreB ? 0 : -1);
+            }
+        });
+
+        List<String> chosen = new ArrayList<>();
+        int size = 0;
+        for (String fragment : fragments) {
+            if (counts.get(fragment) < 2) {
+                continue;
+            }
+            int length = utf8(fragment).length;
+            if (size + length > maxSize) {
+                continue;
+            }
+            chosen.add(fragment);
+            size += length;
+        }
+
+        Collections.reverse(chosen);
+        StringBuilder dictionary = new StringBuilder(size);
+        for (String fragment : chosen) {
+            dictionary.append(fragment);
+        }
+        return utf8(dictionary.toString());
+    } // buildDictionary
+
+    private static byte[] utf8(String text) {
+        try {
+            return text.getBytes(UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    } // utf8
+
+} // DeflateCodec
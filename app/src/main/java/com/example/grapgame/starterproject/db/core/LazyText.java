@@ -0,0 +1,67 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * <p>A TEXT column value which is decoded with its {@link ColumnCodec} the first
+ * time it is accessed, so rows read only for other columns never pay for
+ * decompression.</p>
+ */
+public final class LazyText {
+
+    private final ColumnCodec mCodec;
+    private byte[] mEncoded;
+    private String mText;
+
+    private LazyText(String text, byte[] encoded, ColumnCodec codec) {
+        mText = text;
+        mEncoded = encoded;
+        mCodec = codec;
+    } // LazyText
+
+    /**
+     * @param text already decoded value
+     */
+    @NonNull
+    public static LazyText of(@Nullable String text) {
+        return new LazyText(text, null, null);
+    } // of
+
+    /**
+     * Read column at index, plain TEXT values are taken as they are and
+     * BLOB values are kept encoded until {@link LazyText#get()} is called.
+     *
+     * @param cursor cursor positioned on the row
+     * @param index  column index
+     * @param codec  codec used when the value was written
+     */
+    @NonNull
+    public static LazyText from(@NonNull Cursor cursor, int index, @NonNull ColumnCodec codec) {
+        if (cursor.getType(index) == Cursor.FIELD_TYPE_BLOB) {
+            return new LazyText(null, cursor.getBlob(index), codec);
+        }
+        return new LazyText(cursor.getString(index), null, null);
+    } // from
+
+    /**
+     * @return decoded value
+     */
+    @Nullable
+    public synchronized String get() {
+        if (mEncoded != null) {
+            mText = mCodec.decode(mEncoded);
+            mEncoded = null;
+        }
+        return mText;
+    } // get
+
+    /**
+     * @return true if value has not been decoded yet
+     */
+    public synchronized boolean isEncoded() {
+        return mEncoded != null;
+    } // isEncoded
+
+} // LazyText
@@ -0,0 +1,210 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Maps rows to models on several threads while the cursor is read. Passed as the
+ * {@link DatabaseManager.CursorCallback} of a query, the cursor thread only copies raw
+ * column values of each row into a batch; full batches are mapped by a shared pool of
+ * decoder threads and handed to the receiver on the cursor thread, in cursor order.</p>
+ * <p>
+ * <p>At most <em>parallelism</em> batches are in flight, the cursor thread waits for the
+ * oldest one beyond that, so memory stays bounded however large the result is. Worth it
+ * only when mapping a row costs far more than copying it, e.g. parsing JSON values.
+ * The mapper is called concurrently and must not keep state between rows.</p>
+ * <p>
+ * <p>Call {@link ParallelDecoder#finish()} after the query to map the last batch, or
+ * {@link ParallelDecoder#cancel()} if the query failed.</p>
+ *
+ * @param <T> type of mapped rows
+ */
+public final class ParallelDecoder<T> implements DatabaseManager.CursorCallback {
+
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final int MAX_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadPoolExecutor sPool;
+
+    static {
+        sPool = new ThreadPoolExecutor(MAX_PARALLELISM, MAX_PARALLELISM, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "db-decoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        sPool.allowCoreThreadTimeOut(true);
+    }
+
+    private final RowMapper<T> mMapper;
+    private final Receiver<T> mReceiver;
+    private final int mParallelism;
+    private final int mBatchSize;
+    private final ArrayDeque<Future<List<T>>> mInFlight = new ArrayDeque<>();
+
+    private Cursor mLastCursor;
+    private String[] mColumns;
+    private MatrixCursor mBatch;
+    private int mBatchRows;
+
+    /**
+     * @param parallelism batches mapped at once, capped to {@link ParallelDecoder#getMaxParallelism()}
+     * @param mapper      maps the current row of a cursor, called on decoder threads
+     * @param receiver    receives mapped rows in order, called on the cursor thread
+     */
+    public ParallelDecoder(int parallelism, @NonNull RowMapper<T> mapper, @NonNull Receiver<T> receiver) {
+        this(parallelism, DEFAULT_BATCH_SIZE, mapper, receiver);
+    } // ParallelDecoder
+
+    /**
+     * @param batchSize rows copied before a batch is handed to the pool
+     */
+    public ParallelDecoder(int parallelism, int batchSize, @NonNull RowMapper<T> mapper, @NonNull Receiver<T> receiver) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Parallelism and batch size must be positive.");
+        }
+        mParallelism = Math.min(parallelism, MAX_PARALLELISM);
+        mBatchSize = batchSize;
+        mMapper = mapper;
+        mReceiver = receiver;
+    } // ParallelDecoder
+
+    /**
+     * @return number of decoder threads, one per available processor
+     */
+    public static int getMaxParallelism() {
+        return MAX_PARALLELISM;
+    } // getMaxParallelism
+
+    @Override
+    public void fetchData(@NonNull Cursor cursor) {
+        if (cursor != mLastCursor) {
+            // Chunks share their columns, oversized rows come without length columns.
+            String[] columns = cursor.getColumnNames();
+            if (mColumns != null && !Arrays.equals(mColumns, columns)) {
+                submit();
+            }
+            mColumns = columns;
+            mLastCursor = cursor;
+        }
+
+        if (mBatch == null) {
+            mBatch = new MatrixCursor(mColumns, mBatchSize);
+        }
+
+        Object[] row = new Object[mColumns.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = ChunkedQuery.valueOf(cursor, i);
+        }
+        mBatch.addRow(row);
+
+        if (++mBatchRows == mBatchSize) {
+            submit();
+        }
+    } // fetchData
+
+    /**
+     * Map the last batch and wait until every row is received.
+     */
+    public void finish() {
+        submit();
+        while (!mInFlight.isEmpty()) {
+            receive(mInFlight.poll());
+        }
+        mLastCursor = null;
+    } // finish
+
+    /**
+     * Drop batches not received yet.
+     */
+    public void cancel() {
+        for (Future<List<T>> future : mInFlight) {
+            future.cancel(false);
+        }
+        mInFlight.clear();
+        mBatch = null;
+        mBatchRows = 0;
+        mLastCursor = null;
+    } // cancel
+
+    private void submit() {
+        if (mBatch == null) {
+            return;
+        }
+
+        final MatrixCursor batch = mBatch;
+        mBatch = null;
+        mBatchRows = 0;
+
+        mInFlight.add(sPool.submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                List<T> models = new ArrayList<>(batch.getCount());
+                while (batch.moveToNext()) {
+                    models.add(mMapper.map(batch));
+                }
+                batch.close();
+                return models;
+            }
+        }));
+
+        while (mInFlight.size() > mParallelism) {
+            receive(mInFlight.poll());
+        }
+    } // submit
+
+    private void receive(Future<List<T>> future) {
+        List<T> models;
+        try {
+            models = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new IllegalStateException("Interrupted while decoding rows.", e);
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to decode rows.", cause);
+        }
+
+        for (T model : models) {
+            mReceiver.onDecoded(model);
+        }
+    } // receive
+
+    /**
+     * Maps current row of a cursor to a model.
+     */
+    public interface RowMapper<T> {
+        @NonNull
+        T map(@NonNull Cursor cursor);
+    } // RowMapper
+
+    /**
+     * Receives mapped rows in cursor order.
+     */
+    public interface Receiver<T> {
+        void onDecoded(@NonNull T model);
+    } // Receiver
+
+} // ParallelDecoder
@@ -0,0 +1,435 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Typed <code>WHERE</code> clause. Predicates are built from comparisons
+ * ({@link Predicate#eq}, {@link Predicate#in}, {@link Predicate#between}, {@link Predicate#like}, ...)
+ * and combined with {@link Predicate#and}, {@link Predicate#or} and {@link Predicate#not}.</p>
+ * <p>
+ * <p>Values never end up in sql text, they are passed as arguments, so every predicate
+ * with the same shape (columns, operators and number of <code>IN</code> values) compiles
+ * to the same sql, and repeated queries with different values reuse the statement
+ * prepared by the connection. Compiled sql is kept in a bounded cache keyed by shape, so
+ * a new predicate of a known shape is not compiled again, and memoized on the predicate.</p>
+ * <p>
+ * <pre>
+ * Predicate p = Predicate.and(
+ *         Predicate.eq("key", key),
+ *         Predicate.or(Predicate.isNull("value"), Predicate.like("value", "%draft%")));
+ * </pre>
+ *
+ * @see DatabaseManager#count(String, String, String, String[])
+ */
+public abstract class Predicate {
+
+    private static final int MAX_CACHED_SHAPES = 128;
+
+    /**
+     * Compiled sql by predicate shape, least recently used shapes are dropped.
+     */
+    private static final Map<Shape, String> sShapes = new LinkedHashMap<Shape, String>(MAX_CACHED_SHAPES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Shape, String> eldest) {
+            return size() > MAX_CACHED_SHAPES;
+        }
+    };
+
+    private String mSql;
+
+    Predicate() {
+    } // Predicate
+
+    @NonNull
+    public static Predicate eq(@NonNull String column, @NonNull Object value) {
+        return new Comparison(column, "=", value);
+    } // eq
+
+    @NonNull
+    public static Predicate notEq(@NonNull String column, @NonNull Object value) {
+        return new Comparison(column, "<>", value);
+    } // notEq
+
+    @NonNull
+    public static Predicate gt(@NonNull String column, @NonNull Object value) {
+        return new Comparison(column, ">", value);
+    } // gt
+
+    @NonNull
+    public static Predicate gte(@NonNull String column, @NonNull Object value) {
+        return new Comparison(column, ">=", value);
+    } // gte
+
+    @NonNull
+    public static Predicate lt(@NonNull String column, @NonNull Object value) {
+        return new Comparison(column, "<", value);
+    } // lt
+
+    @NonNull
+    public static Predicate lte(@NonNull String column, @NonNull Object value) {
+        return new Comparison(column, "<=", value);
+    } // lte
+
+    @NonNull
+    public static Predicate like(@NonNull String column, @NonNull String pattern) {
+        return new Comparison(column, "LIKE", pattern);
+    } // like
+
+    /**
+     * Inclusive range, <code>column BETWEEN low AND high</code>.
+     */
+    @NonNull
+    public static Predicate between(@NonNull String column, @NonNull Object low, @NonNull Object high) {
+        return new Between(column, low, high);
+    } // between
+
+    /**
+     * <code>column IN (...)</code>, an empty collection matches nothing.
+     */
+    @NonNull
+    public static Predicate in(@NonNull String column, @NonNull Collection<?> values) {
+        return new In(column, values);
+    } // in
+
+    @NonNull
+    public static Predicate isNull(@NonNull String column) {
+        return new NullCheck(column, true);
+    } // isNull
+
+    @NonNull
+    public static Predicate isNotNull(@NonNull String column) {
+        return new NullCheck(column, false);
+    } // isNotNull
+
+    @NonNull
+    public static Predicate and(@NonNull Predicate... predicates) {
+        return new Group(" AND ", predicates);
+    } // and
+
+    @NonNull
+    public static Predicate or(@NonNull Predicate... predicates) {
+        return new Group(" OR ", predicates);
+    } // or
+
+    @NonNull
+    public static Predicate not(@NonNull Predicate predicate) {
+        return new Not(predicate);
+    } // not
+
+    /**
+     * @return parameterized sql of this predicate, without <code>WHERE</code>
+     */
+    @NonNull
+    public final String toSql() {
+        if (mSql == null) {
+            Shape shape = shape();
+            String sql;
+            synchronized (sShapes) {
+                sql = sShapes.get(shape);
+            }
+            if (sql == null) {
+                StringBuilder builder = new StringBuilder(64);
+                appendSql(builder);
+                sql = builder.toString();
+                synchronized (sShapes) {
+                    sShapes.put(shape, sql);
+                }
+            }
+            mSql = sql;
+        }
+        return mSql;
+    } // toSql
+
+    /**
+     * @return arguments for placeholders of {@link Predicate#toSql()}, in order
+     */
+    @NonNull
+    public final String[] getArgs() {
+        List<String> args = new ArrayList<>();
+        collectArgs(args);
+        return args.toArray(new String[args.size()]);
+    } // getArgs
+
+    /**
+     * Check that every column used by this predicate exists in the table.
+     *
+     * @param tableName name of the table, used in the error message
+     * @param columns   columns of the table
+     * @throws IllegalArgumentException if a column is not found
+     */
+    public final void validate(String tableName, @NonNull Set<String> columns) {
+        Set<String> used = new HashSet<>();
+        collectColumns(used);
+        for (String column : used) {
+            if (!columns.contains(column)) {
+                throw new IllegalArgumentException(String.format("Unknown column [%s] for table [%s].", column, tableName));
+            }
+        }
+    } // validate
+
+    @Override
+    public String toString() {
+        return toSql();
+    }
+
+    abstract void appendSql(StringBuilder builder);
+
+    abstract void collectArgs(List<String> args);
+
+    abstract void collectColumns(Set<String> columns);
+
+    /**
+     * @return key equal for every predicate compiling to the same sql, values left out
+     */
+    abstract Shape shape();
+
+    private static String arg(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "1" : "0";
+        }
+        return String.valueOf(value);
+    } // arg
+
+    private static final class Comparison extends Predicate {
+        private final String column;
+        private final String operator;
+        private final Object value;
+
+        Comparison(String column, String operator, Object value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        void appendSql(StringBuilder builder) {
+            builder.append(column).append(' ').append(operator).append(" ?");
+        }
+
+        @Override
+        void collectArgs(List<String> args) {
+            args.add(arg(value));
+        }
+
+        @Override
+        void collectColumns(Set<String> columns) {
+            columns.add(column);
+        }
+
+        @Override
+        Shape shape() {
+            return new Shape("cmp", column, operator);
+        }
+    } // Comparison
+
+    private static final class Between extends Predicate {
+        private final String column;
+        private final Object low;
+        private final Object high;
+
+        Between(String column, Object low, Object high) {
+            this.column = column;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        void appendSql(StringBuilder builder) {
+            builder.append(column).append(" BETWEEN ? AND ?");
+        }
+
+        @Override
+        void collectArgs(List<String> args) {
+            args.add(arg(low));
+            args.add(arg(high));
+        }
+
+        @Override
+        void collectColumns(Set<String> columns) {
+            columns.add(column);
+        }
+
+        @Override
+        Shape shape() {
+            return new Shape("between", column);
+        }
+    } // Between
+
+    private static final class In extends Predicate {
+        private final String column;
+        private final Collection<?> values;
+
+        In(String column, Collection<?> values) {
+            this.column = column;
+            this.values = new ArrayList<>(values);
+        }
+
+        @Override
+        void appendSql(StringBuilder builder) {
+            if (values.isEmpty()) {
+                builder.append("0");
+                return;
+            }
+            builder.append(column).append(" IN (");
+            for (int i = 0; i < values.size(); i++) {
+                builder.append(i == 0 ? "?" : ", ?");
+            }
+            builder.append(')');
+        }
+
+        @Override
+        void collectArgs(List<String> args) {
+            for (Object value : values) {
+                args.add(arg(value));
+            }
+        }
+
+        @Override
+        void collectColumns(Set<String> columns) {
+            columns.add(column);
+        }
+
+        @Override
+        Shape shape() {
+            return new Shape("in", column, values.size());
+        }
+    } // In
+
+    private static final class NullCheck extends Predicate {
+        private final String column;
+        private final boolean isNull;
+
+        NullCheck(String column, boolean isNull) {
+            this.column = column;
+            this.isNull = isNull;
+        }
+
+        @Override
+        void appendSql(StringBuilder builder) {
+            builder.append(column).append(isNull ? " IS NULL" : " IS NOT NULL");
+        }
+
+        @Override
+        void collectArgs(List<String> args) {
+        }
+
+        @Override
+        void collectColumns(Set<String> columns) {
+            columns.add(column);
+        }
+
+        @Override
+        Shape shape() {
+            return new Shape("null", column, isNull);
+        }
+    } // NullCheck
+
+    private static final class Group extends Predicate {
+        private final String operator;
+        private final Predicate[] predicates;
+
+        Group(String operator, Predicate[] predicates) {
+            if (predicates.length == 0) {
+                throw new IllegalArgumentException("At least one predicate is required.");
+            }
+            this.operator = operator;
+            this.predicates = predicates.clone();
+        }
+
+        @Override
+        void appendSql(StringBuilder builder) {
+            builder.append('(');
+            for (int i = 0; i < predicates.length; i++) {
+                if (i > 0) {
+                    builder.append(operator);
+                }
+                predicates[i].appendSql(builder);
+            }
+            builder.append(')');
+        }
+
+        @Override
+        void collectArgs(List<String> args) {
+            for (Predicate predicate : predicates) {
+                predicate.collectArgs(args);
+            }
+        }
+
+        @Override
+        void collectColumns(Set<String> columns) {
+            for (Predicate predicate : predicates) {
+                predicate.collectColumns(columns);
+            }
+        }
+
+        @Override
+        Shape shape() {
+            Object[] parts = new Object[predicates.length + 1];
+            parts[0] = operator;
+            for (int i = 0; i < predicates.length; i++) {
+                parts[i + 1] = predicates[i].shape();
+            }
+            return new Shape(parts);
+        }
+    } // Group
+
+    private static final class Not extends Predicate {
+        private final Predicate predicate;
+
+        Not(Predicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        void appendSql(StringBuilder builder) {
+            builder.append("NOT (");
+            predicate.appendSql(builder);
+            builder.append(')');
+        }
+
+        @Override
+        void collectArgs(List<String> args) {
+            predicate.collectArgs(args);
+        }
+
+        @Override
+        void collectColumns(Set<String> columns) {
+            predicate.collectColumns(columns);
+        }
+
+        @Override
+        Shape shape() {
+            return new Shape("not", predicate.shape());
+        }
+    } // Not
+
+    static final class Shape {
+        private final Object[] parts;
+        private final int hash;
+
+        Shape(Object... parts) {
+            this.parts = parts;
+            this.hash = Arrays.hashCode(parts);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Shape && hash == ((Shape) other).hash && Arrays.equals(parts, ((Shape) other).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    } // Shape
+
+} // Predicate
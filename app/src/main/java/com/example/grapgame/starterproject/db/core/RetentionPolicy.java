@@ -0,0 +1,134 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * <p>Limits on how much a table may keep, enforced by {@link TableSweeper}. Any
+ * combination of limits can be set, rows beyond a limit are evicted oldest first.</p>
+ * <ul>
+ * <li>max age - rows whose timestamp column (epoch millis) is older than the age.</li>
+ * <li>max rows - oldest rows beyond the count.</li>
+ * <li>max bytes - oldest rows until the estimated size of values is under the limit.</li>
+ * </ul>
+ * <p>
+ * <p>Rows are ordered by the timestamp column if one is set, by <code>rowid</code> otherwise.</p>
+ */
+public final class RetentionPolicy {
+
+    private static final int DEFAULT_BATCH_SIZE = 200;
+
+    private final String mTimestampColumn;
+    private final long mMaxAgeMillis;
+    private final long mMaxRows;
+    private final long mMaxBytes;
+    private final int mBatchSize;
+
+    private RetentionPolicy(Builder builder) {
+        mTimestampColumn = builder.timestampColumn;
+        mMaxAgeMillis = builder.maxAgeMillis;
+        mMaxRows = builder.maxRows;
+        mMaxBytes = builder.maxBytes;
+        mBatchSize = builder.batchSize;
+    } // RetentionPolicy
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    } // builder
+
+    @Nullable
+    public String getTimestampColumn() {
+        return mTimestampColumn;
+    }
+
+    /**
+     * @return max age in millis, 0 if age is not limited
+     */
+    public long getMaxAgeMillis() {
+        return mMaxAgeMillis;
+    }
+
+    /**
+     * @return max rows, 0 if row count is not limited
+     */
+    public long getMaxRows() {
+        return mMaxRows;
+    }
+
+    /**
+     * @return max bytes, 0 if size is not limited
+     */
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * @return rows deleted per statement
+     */
+    public int getBatchSize() {
+        return mBatchSize;
+    }
+
+    /**
+     * @return column rows are evicted by, oldest first
+     */
+    @NonNull
+    String getOrderColumn() {
+        return mTimestampColumn == null ? "rowid" : mTimestampColumn;
+    } // getOrderColumn
+
+    /**
+     * Builder for {@link RetentionPolicy}.
+     */
+    public static final class Builder {
+
+        private String timestampColumn;
+        private long maxAgeMillis;
+        private long maxRows;
+        private long maxBytes;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+
+        /**
+         * @param timestampColumn column holding creation time in epoch millis
+         * @param maxAgeMillis    rows older than this are evicted
+         */
+        @NonNull
+        public Builder maxAge(@NonNull String timestampColumn, long maxAgeMillis) {
+            this.timestampColumn = timestampColumn;
+            this.maxAgeMillis = maxAgeMillis;
+            return this;
+        } // maxAge
+
+        @NonNull
+        public Builder maxRows(long maxRows) {
+            this.maxRows = maxRows;
+            return this;
+        } // maxRows
+
+        @NonNull
+        public Builder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        } // maxBytes
+
+        /**
+         * @param batchSize rows deleted per statement, smaller batches hold the write lock shorter
+         */
+        @NonNull
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be positive.");
+            }
+            this.batchSize = batchSize;
+            return this;
+        } // batchSize
+
+        @NonNull
+        public RetentionPolicy build() {
+            return new RetentionPolicy(this);
+        } // build
+
+    } // Builder
+
+} // RetentionPolicy
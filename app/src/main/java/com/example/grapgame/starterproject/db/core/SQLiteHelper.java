@@ -3,6 +3,7 @@ package com.example.grapgame.starterproject.db.core;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.support.annotation.NonNull;
 
 import com.example.grapgame.starterproject.db.DBConstants;
@@ -16,18 +17,65 @@ import com.example.grapgame.starterproject.db.Queries;
  */
 public class SQLiteHelper extends SQLiteOpenHelper {
 
-    private SQLiteHelper(Context ctx, String name, int version) {
+    private final DatabaseConfig mConfig;
+
+    private SQLiteHelper(Context ctx, String name, int version, DatabaseConfig config) {
         super(ctx, name, null, version);
+        mConfig = config;
     } // SQLiteHelper
 
     @NonNull
     public static SQLiteHelper newInstance(Context ctx, String name, int version) {
-        return new SQLiteHelper(ctx, name, version);
+        return newInstance(ctx, name, version, DatabaseConfig.defaults());
+    }
+
+    /**
+     * @param config PRAGMAs applied every time the database is opened
+     * @see DatabaseConfig
+     */
+    @NonNull
+    public static SQLiteHelper newInstance(Context ctx, String name, int version, @NonNull DatabaseConfig config) {
+        return new SQLiteHelper(ctx, name, version, config);
     }
 
+    @NonNull
+    DatabaseConfig getConfig() {
+        return mConfig;
+    } // getConfig
+
+    /**
+     * Called before {@link SQLiteHelper#onCreate} and
+     * {@link SQLiteHelper#onUpgrade}, so page size and auto vacuum
+     * are in place before any table is created.
+     */
+    @Override
+    public void onConfigure(@NonNull SQLiteDatabase db) {
+        mConfig.apply(db);
+    } // onConfigure
+
+    /**
+     * Per connection PRAGMAs are applied again once the database is open, as Android
+     * may reset some of them while opening, e.g. <code>synchronous</code> when enabling WAL.
+     */
+    @Override
+    public void onOpen(@NonNull SQLiteDatabase db) {
+        // onConfigure is not available below jelly bean.
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            mConfig.apply(db);
+        } else {
+            mConfig.applyConnection(db);
+        }
+    } // onOpen
+
     @Override
     public void onCreate(@NonNull SQLiteDatabase db) {
         db.execSQL(Queries.createFeed());
+        db.execSQL(Queries.createFeedKeyIndex());
+        db.execSQL(Queries.createOutbox());
+        db.execSQL(Queries.createSyncState());
+        for (String query : Queries.createFeedChangeLog()) {
+            db.execSQL(query);
+        }
     } // onCreate
 
     /**
@@ -42,10 +90,43 @@ public class SQLiteHelper extends SQLiteOpenHelper {
 
     private void dropTables(@NonNull SQLiteDatabase db) {
         db.execSQL(Queries.drop(DBConstants.Feed.TABLE_NAME));
+        db.execSQL(Queries.drop(DBConstants.Outbox.TABLE_NAME));
+        db.execSQL(Queries.drop(DBConstants.SyncState.TABLE_NAME));
+        for (String query : ChangeLog.dropQueries(DBConstants.Feed.TABLE_NAME)) {
+            db.execSQL(query);
+        }
     } // dropTables
 
+    /**
+     * Delete every row of app tables in one transaction, then let {@link DatabaseVacuum}
+     * return the freed pages.
+     *
+     * @param database name of the database registered with {@link DatabaseConnection}
+     */
+    public static void truncateTables(@NonNull String database) {
+        DatabaseManager.runInTransaction(database, new DatabaseManager.TransactionCallback() {
+            @Override
+            public void execute(@NonNull SQLiteDatabase db) {
+                truncateTables(db);
+            }
+        });
+        TableObserver.notifyChanged(database, DBConstants.Feed.TABLE_NAME);
+        TableObserver.notifyChanged(database, DBConstants.Outbox.TABLE_NAME);
+        TableObserver.notifyChanged(database, DBConstants.SyncState.TABLE_NAME);
+        DatabaseVacuum.onBulkDelete(database);
+    } // truncateTables
+
+    /**
+     * Delete every row of app tables, change logs included so nothing is uploaded as
+     * deleted. Freed pages stay in the file, call
+     * {@link DatabaseVacuum#onBulkDelete(String)} once the connection is released,
+     * or use {@link SQLiteHelper#truncateTables(String)}.
+     */
     public static void truncateTables(SQLiteDatabase db) {
         db.execSQL(Queries.truncate(DBConstants.Feed.TABLE_NAME));
+        db.execSQL(Queries.truncate(DBConstants.Outbox.TABLE_NAME));
+        db.execSQL(Queries.truncate(DBConstants.SyncState.TABLE_NAME));
+        db.execSQL(Queries.truncate(ChangeLog.tableOf(DBConstants.Feed.TABLE_NAME)));
 
     }//truncateTables
 } // SQLiteHelper
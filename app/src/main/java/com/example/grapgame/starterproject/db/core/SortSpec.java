@@ -0,0 +1,211 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * <p>Typed <code>ORDER BY</code> specification with one or more columns, each with its own
+ * {@link SortOrder}, null placement and collation. Specs are immutable and their sql text
+ * is built once, so a spec should be kept in a constant and reused.</p>
+ * <p>
+ * <pre>
+ * SortSpec spec = SortSpec.builder()
+ *         .add("pinned", SortOrder.DESC)
+ *         .add("timestamp", SortOrder.DESC)
+ *         .add("id", SortOrder.DESC)
+ *         .build();
+ * </pre>
+ * <p>
+ * <p>To let SQLite walk an index instead of sorting in a temp b-tree, create an index with
+ * {@link SortSpec#toIndexSql(String)}; its columns, orders and collations match the spec.
+ * {@link Nulls} other than {@link Nulls#DEFAULT} add an <code>IS NULL</code> term which
+ * no index can serve, so keep them for small results.</p>
+ *
+ * @see SortOrder
+ */
+public final class SortSpec {
+
+    private final List<Term> mTerms;
+    private final String mSql;
+
+    private SortSpec(List<Term> terms) {
+        mTerms = Collections.unmodifiableList(terms);
+        mSql = buildSql();
+    } // SortSpec
+
+    /**
+     * @return spec sorting on a single column
+     */
+    @NonNull
+    public static SortSpec by(@NonNull String column, @NonNull SortOrder order) {
+        return builder().add(column, order).build();
+    } // by
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    } // builder
+
+    /**
+     * @return cached text for <code>ORDER BY</code>, without the keywords
+     */
+    @NonNull
+    public String toSql() {
+        return mSql;
+    } // toSql
+
+    /**
+     * Index name is made of every column with its order and collation, so specs which
+     * differ only in those get their own index instead of silently reusing the first one.
+     *
+     * @param tableName table to be indexed
+     * @return create statement of an index matching this spec
+     */
+    @NonNull
+    public String toIndexSql(@NonNull String tableName) {
+        StringBuilder name = new StringBuilder("idx_").append(tableName);
+        StringBuilder columns = new StringBuilder(64);
+        for (Term term : mTerms) {
+            name.append('_').append(term.column).append('_').append(term.order.name().toLowerCase(Locale.US));
+            if (columns.length() > 0) {
+                columns.append(", ");
+            }
+            columns.append(term.column);
+            if (term.collation != null) {
+                name.append('_').append(term.collation.name().toLowerCase(Locale.US));
+                columns.append(" COLLATE ").append(term.collation.name());
+            }
+            columns.append(' ').append(term.order.name());
+        }
+        return String.format("CREATE INDEX IF NOT EXISTS %s ON %s (%s)", name, tableName, columns);
+    } // toIndexSql
+
+    /**
+     * Check that every column of this spec exists in the table. Names are matched
+     * ignoring case, as SQLite does.
+     *
+     * @param tableName name of the table, used in the error message
+     * @param columns   columns of the table
+     * @throws IllegalArgumentException if a column is not found
+     */
+    public void validate(String tableName, @NonNull Set<String> columns) {
+        for (Term term : mTerms) {
+            if (!containsIgnoreCase(columns, term.column)) {
+                throw new IllegalArgumentException(String.format("Unknown sort column [%s] for table [%s].", term.column, tableName));
+            }
+        }
+    } // validate
+
+    private static boolean containsIgnoreCase(Set<String> columns, String column) {
+        if (columns.contains(column)) {
+            return true;
+        }
+        for (String candidate : columns) {
+            if (candidate.equalsIgnoreCase(column)) {
+                return true;
+            }
+        }
+        return false;
+    } // containsIgnoreCase
+
+    private String buildSql() {
+        StringBuilder builder = new StringBuilder(64);
+        for (Term term : mTerms) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+
+            // NULLS FIRST/LAST is not available before sqlite 3.30, emulate with a leading term.
+            if (term.nulls == Nulls.FIRST) {
+                builder.append(term.column).append(" IS NULL DESC, ");
+            } else if (term.nulls == Nulls.LAST) {
+                builder.append(term.column).append(" IS NULL ASC, ");
+            }
+
+            builder.append(term.column);
+            if (term.collation != null) {
+                builder.append(" COLLATE ").append(term.collation.name());
+            }
+            builder.append(' ').append(term.order.name());
+        }
+        return builder.toString();
+    } // buildSql
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof SortSpec && mSql.equals(((SortSpec) o).mSql));
+    }
+
+    @Override
+    public int hashCode() {
+        return mSql.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mSql;
+    }
+
+    /**
+     * Placement of null values.
+     */
+    public enum Nulls {
+        DEFAULT, FIRST, LAST
+    } // Nulls
+
+    /**
+     * Collations available in android's sqlite.
+     */
+    public enum Collation {
+        BINARY, NOCASE, RTRIM, LOCALIZED, UNICODE
+    } // Collation
+
+    private static final class Term {
+        final String column;
+        final SortOrder order;
+        final Nulls nulls;
+        final Collation collation;
+
+        Term(String column, SortOrder order, Nulls nulls, Collation collation) {
+            this.column = column;
+            this.order = order;
+            this.nulls = nulls;
+            this.collation = collation;
+        }
+    } // Term
+
+    /**
+     * Builder for {@link SortSpec}, columns are sorted in the order they are added.
+     */
+    public static final class Builder {
+
+        private final List<Term> terms = new ArrayList<>();
+
+        @NonNull
+        public Builder add(@NonNull String column, @NonNull SortOrder order) {
+            return add(column, order, Nulls.DEFAULT, null);
+        } // add
+
+        @NonNull
+        public Builder add(@NonNull String column, @NonNull SortOrder order, @NonNull Nulls nulls, @Nullable Collation collation) {
+            terms.add(new Term(column, order, nulls, collation));
+            return this;
+        } // add
+
+        @NonNull
+        public SortSpec build() {
+            if (terms.isEmpty()) {
+                throw new IllegalStateException("Sort spec requires at least one column.");
+            }
+            return new SortSpec(new ArrayList<>(terms));
+        } // build
+
+    } // Builder
+
+} // SortSpec
@@ -0,0 +1,70 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.example.grapgame.starterproject.db.DBConstants;
+
+/**
+ * <p>Server cursor of every synced table, kept in the sync state table. The cursor is
+ * opaque to the app, the server returns it with every page of changes and expects it
+ * back to send only changes after it.</p>
+ * <p>
+ * <p>Write the cursor in the transaction applying the changes it covers, so a crash never
+ * leaves the cursor ahead of the data.</p>
+ */
+public final class SyncState {
+
+    private SyncState() {
+        throw new AssertionError("Instance is not allowed.");
+    } // SyncState
+
+    /**
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName synced table
+     * @return cursor of the last sync, null if table was never synced
+     */
+    @Nullable
+    public static String getCursor(@NonNull String database, @NonNull String tableName) {
+        final String[] cursorValue = new String[1];
+        String query = String.format("SELECT %s FROM %s WHERE %s = ?", DBConstants.SyncState.CURSOR,
+                DBConstants.SyncState.TABLE_NAME, DBConstants.SyncState.SYNCED_TABLE);
+        DatabaseManager.queryRaw(database, query, new String[]{tableName}, new DatabaseManager.CursorCallback() {
+            @Override
+            public void fetchData(@NonNull Cursor cursor) {
+                cursorValue[0] = cursor.getString(0);
+            }
+        });
+        return cursorValue[0];
+    } // getCursor
+
+    /**
+     * Store cursor of a table, call inside the transaction applying the changes.
+     *
+     * @param db        database in transaction
+     * @param tableName synced table
+     * @param cursor    cursor returned by the server
+     */
+    public static void setCursor(@NonNull SQLiteDatabase db, @NonNull String tableName, @Nullable String cursor) {
+        ContentValues values = new ContentValues();
+        values.put(DBConstants.SyncState.SYNCED_TABLE, tableName);
+        values.put(DBConstants.SyncState.CURSOR, cursor);
+        values.put(DBConstants.SyncState.SYNCED_AT, System.currentTimeMillis());
+        db.insertWithOnConflict(DBConstants.SyncState.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    } // setCursor
+
+    /**
+     * Forget cursor of a table, the next sync fetches it in full.
+     *
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName synced table
+     */
+    public static void clear(@NonNull String database, @NonNull String tableName) {
+        DatabaseManager.executeUpdateDelete(database, String.format("DELETE FROM %s WHERE %s = ?",
+                DBConstants.SyncState.TABLE_NAME, DBConstants.SyncState.SYNCED_TABLE), tableName);
+    } // clear
+
+} // SyncState
@@ -0,0 +1,72 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.support.annotation.NonNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * <p>Notifies listeners when a table is written through {@link DatabaseManager} or
+ * {@link WriteBuffer}. Listeners are called on the writing thread right after the
+ * write, so they must only hand the event off, e.g. post to a handler or a channel.</p>
+ * <p>
+ * <p>Writes done directly on a {@link android.database.sqlite.SQLiteDatabase}, e.g. in
+ * {@link DatabaseManager#runInTransaction}, are not seen; call
+ * {@link TableObserver#notifyChanged(String, String)} after them.</p>
+ */
+public final class TableObserver {
+
+    private static final Map<String, Set<Listener>> sListeners = new ConcurrentHashMap<>();
+
+    private TableObserver() {
+        throw new AssertionError("Instance is not allowed.");
+    } // TableObserver
+
+    public static void addListener(@NonNull String database, @NonNull String tableName, @NonNull Listener listener) {
+        String key = database + "." + tableName;
+        synchronized (sListeners) {
+            Set<Listener> listeners = sListeners.get(key);
+            if (listeners == null) {
+                listeners = new CopyOnWriteArraySet<>();
+                sListeners.put(key, listeners);
+            }
+            listeners.add(listener);
+        }
+    } // addListener
+
+    public static void removeListener(@NonNull String database, @NonNull String tableName, @NonNull Listener listener) {
+        String key = database + "." + tableName;
+        synchronized (sListeners) {
+            Set<Listener> listeners = sListeners.get(key);
+            if (listeners != null && listeners.remove(listener) && listeners.isEmpty()) {
+                sListeners.remove(key);
+            }
+        }
+    } // removeListener
+
+    /**
+     * Tell listeners of a table that its rows have changed.
+     *
+     * @param database  name of the database registered with {@link DatabaseConnection}
+     * @param tableName changed table
+     */
+    public static void notifyChanged(@NonNull String database, @NonNull String tableName) {
+        Set<Listener> listeners = sListeners.get(database + "." + tableName);
+        if (listeners == null) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onTableChanged(database, tableName);
+        }
+    } // notifyChanged
+
+    /**
+     * Receives change notifications of a table.
+     */
+    public interface Listener {
+        void onTableChanged(@NonNull String database, @NonNull String tableName);
+    } // Listener
+
+} // TableObserver
@@ -0,0 +1,280 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Background sweeper enforcing {@link RetentionPolicy} of registered tables. Rows are
+ * deleted in small batches, each its own statement with a short pause in between, so
+ * writers on the UI path never wait long for the write lock. After rows were evicted
+ * an incremental vacuum step returns freed pages to the file system (only for
+ * databases with <code>auto_vacuum=INCREMENTAL</code>, see {@link DatabaseVacuum}).
+ * Evictions are kept out of the table's {@link ChangeLog}, they are not uploaded
+ * as deletions.</p>
+ * <p>
+ * <p>Sweeps run every interval once {@link TableSweeper#start(long)} is called, or on
+ * demand with {@link TableSweeper#sweepAll()}. Totals are available from
+ * {@link TableSweeper#getRowsEvicted()} and {@link TableSweeper#getBytesReclaimed()}.</p>
+ */
+public final class TableSweeper {
+
+    private static final long BATCH_PAUSE_MILLIS = 20;
+
+    /**
+     * Pages returned to the file system per incremental vacuum step after a sweep.
+     */
+    private static final int VACUUM_PAGES = 256;
+
+    private static final Map<String, Registration> sTables = new ConcurrentHashMap<>();
+    private static final AtomicLong sRowsEvicted = new AtomicLong();
+    private static final AtomicLong sBytesReclaimed = new AtomicLong();
+    private static final AtomicLong sSweeps = new AtomicLong();
+
+    private static ScheduledExecutorService sExecutor;
+    private static ScheduledFuture<?> sTask;
+
+    private TableSweeper() {
+        throw new AssertionError("Instance is not allowed.");
+    } // TableSweeper
+
+    /**
+     * Register a table to be swept, replacing an earlier policy of the same table.
+     */
+    public static void register(@NonNull String database, @NonNull String tableName, @NonNull RetentionPolicy policy) {
+        sTables.put(database + "." + tableName, new Registration(database, tableName, policy));
+    } // register
+
+    public static void unregister(@NonNull String database, @NonNull String tableName) {
+        sTables.remove(database + "." + tableName);
+    } // unregister
+
+    /**
+     * Sweep registered tables every interval on a background thread, starting after one interval.
+     *
+     * @param intervalMillis time between sweeps
+     */
+    public static synchronized void start(long intervalMillis) {
+        stop();
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "db-sweeper");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        sTask = sExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sweepAll();
+                } catch (RuntimeException e) {
+                    // A failed sweep must not cancel later sweeps, next run retries.
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    } // start
+
+    public static synchronized void stop() {
+        if (sTask != null) {
+            sTask.cancel(false);
+            sTask = null;
+        }
+    } // stop
+
+    /**
+     * Sweep every registered table on calling thread.
+     *
+     * @return result per table
+     */
+    @NonNull
+    public static List<Result> sweepAll() {
+        List<Result> results = new ArrayList<>();
+        for (Registration registration : sTables.values()) {
+            results.add(sweep(registration.database, registration.tableName, registration.policy));
+        }
+        return results;
+    } // sweepAll
+
+    /**
+     * Enforce a policy on a table on calling thread.
+     *
+     * @return rows evicted and space reclaimed
+     */
+    @NonNull
+    public static Result sweep(@NonNull String database, @NonNull String tableName, @NonNull RetentionPolicy policy) {
+        long start = System.currentTimeMillis();
+        long pagesBefore = DatabaseManager.longForQuery(database, "PRAGMA page_count");
+        long evicted = 0;
+
+        if (policy.getMaxAgeMillis() > 0) {
+            String cutOff = String.valueOf(System.currentTimeMillis() - policy.getMaxAgeMillis());
+            String sql = String.format("DELETE FROM %1$s WHERE rowid IN (SELECT rowid FROM %1$s WHERE %2$s < ? LIMIT %3$d)",
+                    tableName, policy.getTimestampColumn(), policy.getBatchSize());
+            evicted += deleteInBatches(database, tableName, sql, policy.getBatchSize(), Long.MAX_VALUE, cutOff);
+        }
+
+        if (policy.getMaxRows() > 0) {
+            long excess = DatabaseManager.count(database, tableName, null, null) - policy.getMaxRows();
+            evicted += deleteOldest(database, tableName, policy, excess);
+        }
+
+        if (policy.getMaxBytes() > 0) {
+            evicted += deleteOldest(database, tableName, policy, excessRowsBySize(database, tableName, policy.getMaxBytes()));
+        }
+
+        if (evicted > 0) {
+            TableObserver.notifyChanged(database, tableName);
+            DatabaseVacuum.incrementalStep(database, VACUUM_PAGES);
+        }
+
+        long pageSize = DatabaseManager.longForQuery(database, "PRAGMA page_size");
+        long reclaimed = Math.max(0, pagesBefore - DatabaseManager.longForQuery(database, "PRAGMA page_count")) * pageSize;
+
+        sRowsEvicted.addAndGet(evicted);
+        sBytesReclaimed.addAndGet(reclaimed);
+        sSweeps.incrementAndGet();
+        return new Result(database, tableName, evicted, reclaimed, System.currentTimeMillis() - start);
+    } // sweep
+
+    /**
+     * @return rows evicted by every sweep since process start
+     */
+    public static long getRowsEvicted() {
+        return sRowsEvicted.get();
+    }
+
+    /**
+     * @return bytes returned to the file system by every sweep since process start
+     */
+    public static long getBytesReclaimed() {
+        return sBytesReclaimed.get();
+    }
+
+    /**
+     * @return sweeps run since process start
+     */
+    public static long getSweeps() {
+        return sSweeps.get();
+    }
+
+    private static long deleteOldest(String database, String tableName, RetentionPolicy policy, long excess) {
+        if (excess <= 0) {
+            return 0;
+        }
+        String sql = String.format("DELETE FROM %1$s WHERE rowid IN (SELECT rowid FROM %1$s ORDER BY %2$s ASC LIMIT ?)",
+                tableName, policy.getOrderColumn());
+        return deleteInBatches(database, tableName, sql, policy.getBatchSize(), excess, null);
+    } // deleteOldest
+
+    /**
+     * Run delete statement until it deletes fewer rows than a batch or limit is reached.
+     * Statement takes the batch size as its last argument unless <em>arg</em> is given.
+     * Every batch is its own unlogged transaction, see {@link ChangeLog#runUnlogged}.
+     */
+    private static long deleteInBatches(final String database, String tableName, final String sql, int batchSize, long limit, String arg) {
+        long deleted = 0;
+        final int[] count = new int[1];
+        while (deleted < limit) {
+            long batch = Math.min(batchSize, limit - deleted);
+            final String batchArg = arg != null ? arg : String.valueOf(batch);
+            ChangeLog.runUnlogged(database, tableName, new DatabaseManager.TransactionCallback() {
+                @Override
+                public void execute(@NonNull SQLiteDatabase db) {
+                    count[0] = DatabaseManager.executeUpdateDelete(database, sql, batchArg);
+                }
+            });
+            deleted += count[0];
+            if (count[0] < batch) {
+                break;
+            }
+            pause();
+        }
+        return deleted;
+    } // deleteInBatches
+
+    /**
+     * Estimate rows to evict from total length of values and average row size.
+     */
+    private static long excessRowsBySize(String database, String tableName, long maxBytes) {
+        StringBuilder length = new StringBuilder(64);
+        for (String column : DatabaseManager.getColumns(database, tableName)) {
+            if (length.length() > 0) {
+                length.append(" + ");
+            }
+            length.append("ifnull(length(").append(column).append("), 0)");
+        }
+
+        if (length.length() == 0) {
+            return 0;
+        }
+
+        long rows = DatabaseManager.count(database, tableName, null, null);
+        long bytes = DatabaseManager.longForQuery(database, String.format("SELECT total(%s) FROM %s", length, tableName));
+        if (rows == 0 || bytes <= maxBytes) {
+            return 0;
+        }
+
+        long average = Math.max(1, bytes / rows);
+        return (bytes - maxBytes + average - 1) / average;
+    } // excessRowsBySize
+
+    private static void pause() {
+        try {
+            Thread.sleep(BATCH_PAUSE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    } // pause
+
+    private static final class Registration {
+        final String database;
+        final String tableName;
+        final RetentionPolicy policy;
+
+        Registration(String database, String tableName, RetentionPolicy policy) {
+            this.database = database;
+            this.tableName = tableName;
+            this.policy = policy;
+        }
+    } // Registration
+
+    /**
+     * Outcome of sweeping one table.
+     */
+    public static final class Result {
+        public final String database;
+        public final String tableName;
+        public final long rowsEvicted;
+        public final long bytesReclaimed;
+        public final long durationMillis;
+
+        Result(String database, String tableName, long rowsEvicted, long bytesReclaimed, long durationMillis) {
+            this.database = database;
+            this.tableName = tableName;
+            this.rowsEvicted = rowsEvicted;
+            this.bytesReclaimed = bytesReclaimed;
+            this.durationMillis = durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s.%s evicted[%d] reclaimed[%d] took[%dms]", database, tableName, rowsEvicted, bytesReclaimed, durationMillis);
+        }
+    } // Result
+
+} // TableSweeper
@@ -0,0 +1,431 @@
+package com.example.grapgame.starterproject.db.core;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Write-behind buffer for single row writes of one table. Writes to the same key
+ * within the window are coalesced, the last one wins, and everything pending is
+ * written in one transaction on a single background thread once the window ends.</p>
+ * <p>
+ * <p>Rows to be inserted are coalesced by a key given by the caller (writes without
+ * a key are only batched), a coalesced insert moves to the position of its latest
+ * write. Column updates of the same row are merged into one <code>UPDATE</code>
+ * in place, as long as no insert was queued since the pending update; otherwise the
+ * update is queued after that insert, so an insert replacing the row never
+ * overwrites a later update, nor an earlier update a later insert.</p>
+ * <p>
+ * <p>There is one buffer per table of a database, see {@link WriteBuffer#of}. Readers
+ * must flush the buffer of a table, if any ({@link WriteBuffer#find}), before reading
+ * the table to see pending writes,
+ * {@link com.example.grapgame.starterproject.db.source.core.BaseDataSource} does so for
+ * every read and delete of every instance.</p>
+ * <p>
+ * <p>A failed flush is retried with exponential backoff, writes still failing after
+ * {@link WriteBuffer#MAX_ATTEMPTS} flushes are dropped and reported to the
+ * {@link DropListener}. The background thread is a daemon, call
+ * {@link WriteBuffer#init(Context)} in <code>Application.onCreate()</code> so pending
+ * writes are flushed when the app goes to background.</p>
+ */
+public final class WriteBuffer {
+
+    private static final ScheduledExecutorService sLane = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "db-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Flushes a batch of writes is tried before it is dropped.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String TAG = "WriteBuffer";
+
+    /**
+     * Buffers by database and table.
+     */
+    private static final Map<String, WriteBuffer> sBuffers = new HashMap<>();
+
+    private static final AtomicLong sDropped = new AtomicLong();
+
+    private static volatile DropListener sDropListener;
+    private static boolean sInitialized;
+
+    private final String mDatabase;
+    private final String mTableName;
+    private final String mIdColumn;
+    private final long mWindowMillis;
+
+    /**
+     * Pending writes, in order of their last change.
+     */
+    private final Map<Object, Write> mPending = new LinkedHashMap<>();
+
+    /**
+     * Held while pending writes are written, so a synchronous flush waits
+     * for a background flush in progress.
+     */
+    private final Object mFlushLock = new Object();
+
+    /**
+     * Key of the latest pending update per row id, cleared when a flush takes the pending writes.
+     */
+    private final Map<String, SequenceKey> mLatestUpdates = new HashMap<>();
+
+    private boolean mScheduled;
+    private long mSequence;
+    private long mInserts;
+
+    /**
+     * Failed flushes in a row, guarded by {@link WriteBuffer#mFlushLock}.
+     */
+    private int mFailures;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushQuietly();
+        }
+    };
+
+    private WriteBuffer(String database, String tableName, String idColumn, long windowMillis) {
+        mDatabase = database;
+        mTableName = tableName;
+        mIdColumn = idColumn;
+        mWindowMillis = windowMillis;
+    } // WriteBuffer
+
+    /**
+     * Get buffer of a table, created on first call. Later calls for the same table
+     * share it, id column and window of the first call are kept.
+     *
+     * @param database     name of the database registered with {@link DatabaseConnection}
+     * @param tableName    table written by this buffer
+     * @param idColumn     primary key column, used by updates
+     * @param windowMillis how long writes are held before they are flushed
+     * @return buffer of the table
+     */
+    @NonNull
+    public static WriteBuffer of(@NonNull String database, @NonNull String tableName, @NonNull String idColumn, long windowMillis) {
+        synchronized (sBuffers) {
+            String name = bufferName(database, tableName);
+            WriteBuffer buffer = sBuffers.get(name);
+            if (buffer == null) {
+                buffer = new WriteBuffer(database, tableName, idColumn, windowMillis);
+                sBuffers.put(name, buffer);
+            }
+            return buffer;
+        }
+    } // of
+
+    /**
+     * @param database  name of the database
+     * @param tableName name of the table
+     * @return buffer of the table, null if nothing was ever buffered for it
+     */
+    @Nullable
+    public static WriteBuffer find(@NonNull String database, @NonNull String tableName) {
+        synchronized (sBuffers) {
+            return sBuffers.get(bufferName(database, tableName));
+        }
+    } // find
+
+    /**
+     * Flush pending writes of every buffer in background when the UI of the app is
+     * hidden or memory runs low. Call once in <code>Application.onCreate()</code>,
+     * later calls are ignored.
+     */
+    public static synchronized void init(@NonNull Context context) {
+        if (sInitialized) {
+            return;
+        }
+        sInitialized = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                    flushAllAsync();
+                }
+            }
+
+            @Override
+            public void onLowMemory() {
+                flushAllAsync();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+        });
+    } // init
+
+    public static void setDropListener(@Nullable DropListener listener) {
+        sDropListener = listener;
+    } // setDropListener
+
+    /**
+     * @return writes dropped after {@link WriteBuffer#MAX_ATTEMPTS} failed flushes
+     */
+    public static long getDropped() {
+        return sDropped.get();
+    } // getDropped
+
+    /**
+     * Flush pending writes of every buffer, on calling thread. Failures of a buffer
+     * are retried or dropped as for background flushes and do not stop the others.
+     */
+    public static void flushAll() {
+        for (WriteBuffer buffer : buffers()) {
+            buffer.flushQuietly();
+        }
+    } // flushAll
+
+    private static void flushAllAsync() {
+        sLane.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushAll();
+            }
+        });
+    } // flushAllAsync
+
+    private static List<WriteBuffer> buffers() {
+        synchronized (sBuffers) {
+            return new ArrayList<>(sBuffers.values());
+        }
+    } // buffers
+
+    /**
+     * Queue an insert (with replace on conflict).
+     *
+     * @param key    identity of the row, an earlier pending insert with the same key is
+     *               replaced; null to never coalesce this insert
+     * @param values values of the row, copied
+     */
+    public void insert(@Nullable Object key, @NonNull ContentValues values) {
+        synchronized (mPending) {
+            Object writeKey = key == null ? new SequenceKey(mSequence++) : new InsertKey(key);
+            mPending.remove(writeKey);
+            mPending.put(writeKey, new Write(false, null, new ContentValues(values), ++mInserts));
+            schedule();
+        }
+    } // insert
+
+    /**
+     * Queue an update of a row, merged with the pending update of the same row
+     * if no insert was queued after it.
+     *
+     * @param id     value of id column of the row
+     * @param values columns to be updated
+     */
+    public void update(@NonNull String id, @NonNull ContentValues values) {
+        synchronized (mPending) {
+            SequenceKey key = mLatestUpdates.get(id);
+            Write previous = key == null ? null : mPending.get(key);
+            if (previous != null && previous.inserts == mInserts) {
+                previous.values.putAll(values);
+            } else {
+                key = new SequenceKey(mSequence++);
+                mPending.put(key, new Write(true, id, new ContentValues(values), mInserts));
+                mLatestUpdates.put(id, key);
+            }
+            schedule();
+        }
+    } // update
+
+    /**
+     * @return true if there is nothing to flush
+     */
+    public boolean isEmpty() {
+        synchronized (mPending) {
+            return mPending.isEmpty();
+        }
+    } // isEmpty
+
+    /**
+     * Write every pending write in one transaction, on calling thread.
+     *
+     * @throws RuntimeException if the transaction failed, the writes are retried
+     *                          later or dropped after {@link WriteBuffer#MAX_ATTEMPTS}
+     */
+    public void flush() {
+        synchronized (mFlushLock) {
+            final Map<Object, Write> writes;
+            synchronized (mPending) {
+                mScheduled = false;
+                if (mPending.isEmpty()) {
+                    return;
+                }
+                writes = new LinkedHashMap<>(mPending);
+                mPending.clear();
+                mLatestUpdates.clear();
+            }
+
+            try {
+                DatabaseManager.runInTransaction(mDatabase, new DatabaseManager.TransactionCallback() {
+                    @Override
+                    public void execute(@NonNull SQLiteDatabase db) {
+                        String where = mIdColumn + " = ?";
+                        for (Write write : writes.values()) {
+                            if (write.update) {
+                                db.updateWithOnConflict(mTableName, write.values, where, new String[]{write.id}, SQLiteDatabase.CONFLICT_REPLACE);
+                            } else {
+                                db.insertWithOnConflict(mTableName, null, write.values, SQLiteDatabase.CONFLICT_REPLACE);
+                            }
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (++mFailures < MAX_ATTEMPTS) {
+                    restore(writes, mWindowMillis << mFailures);
+                } else {
+                    mFailures = 0;
+                    drop(writes.size(), e);
+                }
+                throw e;
+            }
+            mFailures = 0;
+            DatabaseStatistics.onRowsWritten(mDatabase, mTableName, writes.size());
+            TableObserver.notifyChanged(mDatabase, mTableName);
+        }
+    } // flush
+
+    /**
+     * Flush, failures are retried or dropped by {@link WriteBuffer#flush()}.
+     */
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ignored) {
+        }
+    } // flushQuietly
+
+    /**
+     * Put writes of a failed flush back in front of writes queued since, a newer
+     * insert with the same key still wins. Updates are never merged across a failed
+     * flush, they keep their own position.
+     *
+     * @param delayMillis delay of the next flush
+     */
+    private void restore(Map<Object, Write> failed, long delayMillis) {
+        synchronized (mPending) {
+            Map<Object, Write> newer = new LinkedHashMap<>(mPending);
+            mPending.clear();
+            mPending.putAll(failed);
+            for (Map.Entry<Object, Write> entry : newer.entrySet()) {
+                mPending.remove(entry.getKey());
+                mPending.put(entry.getKey(), entry.getValue());
+            }
+            schedule(delayMillis);
+        }
+    } // restore
+
+    private void drop(int count, RuntimeException cause) {
+        sDropped.addAndGet(count);
+        DropListener listener = sDropListener;
+        if (listener != null) {
+            listener.onWritesDropped(mDatabase, mTableName, count, cause);
+        } else {
+            Log.e(TAG, "dropped " + count + " writes to " + mTableName, cause);
+        }
+    } // drop
+
+    private static String bufferName(String database, String tableName) {
+        return database + "." + tableName;
+    } // bufferName
+
+    private void schedule() {
+        schedule(mWindowMillis);
+    } // schedule
+
+    private void schedule(long delayMillis) {
+        if (!mScheduled) {
+            mScheduled = true;
+            sLane.schedule(mFlushTask, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    } // schedule
+
+    private static final class Write {
+        final boolean update;
+        final String id;
+        final ContentValues values;
+
+        /**
+         * Number of inserts queued when this write was queued.
+         */
+        final long inserts;
+
+        Write(boolean update, String id, ContentValues values, long inserts) {
+            this.update = update;
+            this.id = id;
+            this.values = values;
+            this.inserts = inserts;
+        }
+    } // Write
+
+    private static final class InsertKey {
+        final Object key;
+
+        InsertKey(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InsertKey && key.equals(((InsertKey) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+    } // InsertKey
+
+    private static final class SequenceKey {
+        final long sequence;
+
+        SequenceKey(long sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SequenceKey && sequence == ((SequenceKey) o).sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (sequence ^ (sequence >>> 32));
+        }
+    } // SequenceKey
+
+    /**
+     * Receives writes dropped after {@link WriteBuffer#MAX_ATTEMPTS} failed flushes, on the
+     * flushing thread.
+     */
+    public interface DropListener {
+        void onWritesDropped(@NonNull String database, @NonNull String tableName, int count, @NonNull RuntimeException cause);
+    } // DropListener
+
+} // WriteBuffer
@@ -3,16 +3,37 @@ package com.example.grapgame.starterproject.db.source;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.example.grapgame.starterproject.db.DBConstants;
+import com.example.grapgame.starterproject.db.core.ColumnCodec;
 import com.example.grapgame.starterproject.db.source.core.BaseDataSource;
 import com.example.grapgame.starterproject.models.FeedModel;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class FeedSource extends BaseDataSource<FeedModel> {
+
+    private static final Set<String> LARGE_COLUMNS = Collections.singleton(DBConstants.Feed.VALUE);
+
+    private final ColumnCodec mValueCodec;
+
+    public FeedSource() {
+        this(null);
+    }
+
+    /**
+     * @param valueCodec codec used to compress {@link DBConstants.Feed#VALUE}, null for plain text
+     */
+    public FeedSource(@Nullable ColumnCodec valueCodec) {
+        mValueCodec = valueCodec;
+    }
+
     @Override
     protected void fillValues(FeedModel model, ContentValues values) {
         values.put(DBConstants.Feed.KEY, model.getKey());
-        values.put(DBConstants.Feed.VALUE, model.getValue());
+        putText(values, DBConstants.Feed.VALUE, model.getValue());
     }
 
     @NonNull
@@ -20,7 +41,7 @@ public class FeedSource extends BaseDataSource<FeedModel> {
     protected FeedModel getModelFromCursor(Cursor cursor) {
         FeedModel model = new FeedModel();
         model.setKey(cursor.getString(cursor.getColumnIndex(DBConstants.Feed.KEY)));
-        model.setValue(cursor.getString(cursor.getColumnIndex(DBConstants.Feed.VALUE)));
+        model.setValue(getText(cursor, DBConstants.Feed.VALUE));
         return model;
     }
 
@@ -33,4 +54,21 @@ public class FeedSource extends BaseDataSource<FeedModel> {
     protected String getFilterKey() {
         return DBConstants.Feed.ID;
     }
+
+    @Override
+    protected String getSyncKeyColumn() {
+        return DBConstants.Feed.KEY;
+    }
+
+    @NonNull
+    @Override
+    protected Set<String> getLargeColumns() {
+        return LARGE_COLUMNS;
+    }
+
+    @Nullable
+    @Override
+    protected ColumnCodec getCodec(String column) {
+        return DBConstants.Feed.VALUE.equals(column) ? mValueCodec : null;
+    }
 }
@@ -0,0 +1,89 @@
+package com.example.grapgame.starterproject.db.source;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.example.grapgame.starterproject.db.DBConstants;
+import com.example.grapgame.starterproject.db.core.Predicate;
+import com.example.grapgame.starterproject.db.core.SortOrder;
+import com.example.grapgame.starterproject.db.source.core.BaseDataSource;
+import com.example.grapgame.starterproject.models.OutboundRequest;
+
+import java.util.List;
+
+/**
+ * Requests queued while offline, oldest first.
+ *
+ * @see com.example.grapgame.starterproject.services.core.OfflineQueue
+ */
+public class OutboxSource extends BaseDataSource<OutboundRequest> {
+
+    /**
+     * @return oldest queued requests
+     */
+    @NonNull
+    public List<OutboundRequest> getOldest(int limit) {
+        return getByLimit(0, limit, SortOrder.ASC, DBConstants.Outbox.ID);
+    } // getOldest
+
+    /**
+     * @return true if a request with the key is queued
+     */
+    public boolean contains(@NonNull String key) {
+        return count(Predicate.eq(DBConstants.Outbox.KEY, key)) > 0;
+    } // contains
+
+    /**
+     * Update attempts of a queued request. Unlike insert it never replaces a newer
+     * request with the same key.
+     */
+    public void setAttempts(int id, int attempts) {
+        ContentValues values = new ContentValues();
+        values.put(DBConstants.Outbox.ATTEMPTS, attempts);
+        updateWhere(values, new String[]{DBConstants.Outbox.ID}, String.valueOf(id));
+    } // setAttempts
+
+    @Override
+    protected void fillValues(OutboundRequest model, ContentValues values) {
+        if (model.getId() > 0) {
+            values.put(DBConstants.Outbox.ID, model.getId());
+        } else {
+            values.putNull(DBConstants.Outbox.ID);
+        }
+        values.put(DBConstants.Outbox.KEY, model.getKey());
+        values.put(DBConstants.Outbox.METHOD, model.getMethod());
+        values.put(DBConstants.Outbox.URL, model.getUrl());
+        values.put(DBConstants.Outbox.HEADERS, model.getHeaders());
+        values.put(DBConstants.Outbox.CONTENT_TYPE, model.getContentType());
+        values.put(DBConstants.Outbox.BODY, model.getBody());
+        values.put(DBConstants.Outbox.CREATED_AT, model.getCreatedAt());
+        values.put(DBConstants.Outbox.ATTEMPTS, model.getAttempts());
+    }
+
+    @NonNull
+    @Override
+    protected OutboundRequest getModelFromCursor(Cursor cursor) {
+        OutboundRequest model = new OutboundRequest();
+        model.setId(cursor.getInt(cursor.getColumnIndex(DBConstants.Outbox.ID)));
+        model.setKey(cursor.getString(cursor.getColumnIndex(DBConstants.Outbox.KEY)));
+        model.setMethod(cursor.getString(cursor.getColumnIndex(DBConstants.Outbox.METHOD)));
+        model.setUrl(cursor.getString(cursor.getColumnIndex(DBConstants.Outbox.URL)));
+        model.setHeaders(cursor.getString(cursor.getColumnIndex(DBConstants.Outbox.HEADERS)));
+        model.setContentType(cursor.getString(cursor.getColumnIndex(DBConstants.Outbox.CONTENT_TYPE)));
+        model.setBody(cursor.getBlob(cursor.getColumnIndex(DBConstants.Outbox.BODY)));
+        model.setCreatedAt(cursor.getLong(cursor.getColumnIndex(DBConstants.Outbox.CREATED_AT)));
+        model.setAttempts(cursor.getInt(cursor.getColumnIndex(DBConstants.Outbox.ATTEMPTS)));
+        return model;
+    }
+
+    @Override
+    protected String getTableName() {
+        return DBConstants.Outbox.TABLE_NAME;
+    }
+
+    @Override
+    protected String getFilterKey() {
+        return DBConstants.Outbox.ID;
+    }
+}
@@ -2,16 +2,39 @@ package com.example.grapgame.starterproject.db.source.core;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.example.grapgame.starterproject.db.core.BlobStore;
+import com.example.grapgame.starterproject.db.core.ChangeLog;
+import com.example.grapgame.starterproject.db.core.ColumnCodec;
+import com.example.grapgame.starterproject.db.core.DeflateCodec;
+import com.example.grapgame.starterproject.db.core.DatabaseConnection;
 import com.example.grapgame.starterproject.db.core.DatabaseManager;
+import com.example.grapgame.starterproject.db.core.DatabaseStatistics;
+import com.example.grapgame.starterproject.db.core.DatabaseVacuum;
+import com.example.grapgame.starterproject.db.core.LazyText;
+import com.example.grapgame.starterproject.db.core.ParallelDecoder;
+import com.example.grapgame.starterproject.db.core.Predicate;
+import com.example.grapgame.starterproject.db.core.RetentionPolicy;
 import com.example.grapgame.starterproject.db.core.SortOrder;
-
+import com.example.grapgame.starterproject.db.core.SortSpec;
+import com.example.grapgame.starterproject.db.core.SyncState;
+import com.example.grapgame.starterproject.db.core.TableObserver;
+import com.example.grapgame.starterproject.db.core.TableSweeper;
+import com.example.grapgame.starterproject.db.core.WriteBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * <p>Abstract implementation of {@link DataSource}, which acts
@@ -27,6 +50,10 @@ import java.util.List;
  */
 public abstract class BaseDataSource<T> implements DataSource<T> {
 
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final ColumnCodec PLAIN_DEFLATE = new DeflateCodec();
+
+
     /**
      * This is supposed to be a primary key id and it will only return a single record.
      * For getting list of records, use {@link BaseDataSource#getAllWhere(String, String)}
@@ -37,13 +64,8 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @Nullable
     @Override
     public T getById(int id) {
-        final List<T> records = new ArrayList<>();
-        DatabaseManager.query(getTableName(), getFilterKey() + " = ?", new String[]{String.valueOf(id)}, new DatabaseManager.CursorCallback() {
-            @Override
-            public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
-            }
-        });
+        flushWrites();
+        List<T> records = readChunked(getFilterKey() + " = ?", new String[]{String.valueOf(id)}, null, null);
         if (records.size() > 0) {
             return records.get(0);
         } else {
@@ -60,19 +82,15 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @NonNull
     @Override
     public List<T> getAllById(int id) {
-        final List<T> records = new ArrayList<>();
-        DatabaseManager.query(getTableName(), getFilterKey() + " = ?", new String[]{String.valueOf(id)}, new DatabaseManager.CursorCallback() {
-            @Override
-            public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
-            }
-        });
-        return records;
+        flushWrites();
+        return readChunked(getFilterKey() + " = ?", new String[]{String.valueOf(id)}, null, null);
     } // getById
 
 
     /**
-     * <p>Returns records from databse with in a given range.</p>
+     * <p>Returns records from databse with in a given range. The sort column is passed to
+     * sql as it is and not validated, use {@link BaseDataSource#getByLimit(int, int, SortSpec)}
+     * for checked columns.</p>
      *
      * @param start start offset
      * @param end   end offset
@@ -81,16 +99,24 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @NonNull
     @Override
     public List<T> getByLimit(int start, int end, SortOrder order, String sortColumn) {
-        final List<T> records = new ArrayList<>();
-        String offset = String.format("%s, %s", start, end);
+        flushWrites();
+        return readChunked(null, null, String.format("%s %s", sortColumn, order), String.format("%s, %s", start, end));
+    }
 
-        DatabaseManager.queryLimited(getTableName(), offset, order, sortColumn, new DatabaseManager.CursorCallback() {
-            @Override
-            public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
-            }
-        });
-        return records;
+    /**
+     * <p>Returns records from databse with in a given range, ordered by given spec.</p>
+     *
+     * @param start    start offset
+     * @param end      end offset
+     * @param sortSpec order of records
+     * @return T
+     */
+    @NonNull
+    @Override
+    public List<T> getByLimit(int start, int end, @NonNull SortSpec sortSpec) {
+        flushWrites();
+        sortSpec.validate(getTableName(), DatabaseManager.getColumns(getDatabaseName(), getTableName()));
+        return readChunked(null, null, sortSpec.toSql(), String.format("%s, %s", start, end));
     }
 
     /**
@@ -103,14 +129,8 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @NonNull
     @Override
     public List<T> getAllWhere(String column, String value) {
-        final List<T> records = new ArrayList<>();
-        DatabaseManager.query(getTableName(), column + " = ?", new String[]{value}, new DatabaseManager.CursorCallback() {
-            @Override
-            public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
-            }
-        });
-        return records;
+        flushWrites();
+        return readChunked(column + " = ?", new String[]{value}, null, null);
     } // getAllWhere
 
 
@@ -124,7 +144,7 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @NonNull
     @Override
     public List<T> getAllByColumns(@NonNull String[] columns, String... values) {
-        final List<T> records = new ArrayList<>();
+        flushWrites();
         StringBuilder whereBuilder = new StringBuilder(200);
 
         for (int i = 0; i < columns.length - 1; i++) {
@@ -134,17 +154,13 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
 
         whereBuilder.append(columns[columns.length - 1]).append(" = ?");
 
-        DatabaseManager.query(getTableName(), whereBuilder.toString(), values, new DatabaseManager.CursorCallback() {
-            @Override
-            public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
-            }
-        });
-        return records;
+        return readChunked(whereBuilder.toString(), values, null, null);
     }
 
     /**
      * <p>Get all values where columns equal to values and return unique records</p>
+     * <p>
+     * <p>Not read in chunks, rows of a group may be spread over chunks.</p>
      *
      * @param columns columns to be matched with values
      * @param values  vales required for columns
@@ -153,6 +169,7 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @NonNull
     @Override
     public List<T> getAllByColumnsUnique(@NonNull String groupBy, @NonNull String[] columns, String... values) {
+        flushWrites();
         final List<T> records = new ArrayList<>();
         StringBuilder whereBuilder = new StringBuilder(200);
 
@@ -163,10 +180,10 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
 
         whereBuilder.append(columns[columns.length - 1]).append(" = ?");
 
-        DatabaseManager.queryUnique(getTableName(), whereBuilder.toString(), values, groupBy, new DatabaseManager.CursorCallback() {
+        DatabaseManager.queryUnique(getDatabaseName(), getTableName(), whereBuilder.toString(), values, groupBy, new DatabaseManager.CursorCallback() {
             @Override
             public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
+                records.add(toModel(cursor));
             }
         });
         return records;
@@ -180,6 +197,7 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
      */
     @Override
     public void updateWhere(ContentValues content, @NonNull String[] columns, String... values) {
+        flushWrites();
         StringBuilder whereBuilder = new StringBuilder(200);
 
         for (int i = 0; i < columns.length - 1; i++) {
@@ -188,7 +206,8 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
         }
 
         whereBuilder.append(columns[columns.length - 1]).append(" = ? ");
-        DatabaseManager.update(getTableName(), content, whereBuilder.toString(), values);
+        BlobStore.encode(content, getBlobColumns());
+        DatabaseManager.update(getDatabaseName(), getTableName(), content, whereBuilder.toString(), values);
     }
 
     /**
@@ -201,15 +220,130 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @NonNull
     @Override
     public List<T> get(String whereClause, String... values) {
+        flushWrites();
+        return readChunked(whereClause, values, null, null);
+    }
+
+    /**
+     * <p>Fetch records matching given predicate.</p>
+     *
+     * @param predicate criteria for record selection
+     * @return T list of records
+     */
+    @NonNull
+    @Override
+    public List<T> get(@NonNull Predicate predicate) {
         final List<T> records = new ArrayList<>();
-        DatabaseManager.query(getTableName(), whereClause, values, new DatabaseManager.CursorCallback() {
+        forEach(predicate, new ModelCallback<T>() {
+            @Override
+            public void onModel(@NonNull T model) {
+                records.add(model);
+            }
+        });
+        return records;
+    } // get
+
+    /**
+     * <p>Stream records matching given predicate to the callback, one at a
+     * time, without collecting them in a list.</p>
+     *
+     * @param predicate criteria for record selection
+     * @param callback  receives every matching record
+     */
+    @Override
+    public void forEach(@NonNull Predicate predicate, @NonNull final ModelCallback<T> callback) {
+        flushWrites();
+        predicate.validate(getTableName(), DatabaseManager.getColumns(getDatabaseName(), getTableName()));
+        DatabaseManager.queryChunked(getDatabaseName(), getTableName(), predicate.toSql(), predicate.getArgs(), getChunkSize(), getLargeColumns(), new DatabaseManager.CursorCallback() {
             @Override
             public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
+                callback.onModel(toModel(cursor));
+            }
+        });
+    } // forEach
+
+    /**
+     * <p>Fetch records matching given predicate, mapping rows on several threads.</p>
+     *
+     * @param predicate   criteria for record selection
+     * @param parallelism row batches mapped at once
+     * @return T list of records, in the same order as {@link BaseDataSource#get(Predicate)}
+     * @see BaseDataSource#forEachParallel(Predicate, int, ModelCallback)
+     */
+    @NonNull
+    @Override
+    public List<T> getParallel(@NonNull Predicate predicate, int parallelism) {
+        final List<T> records = new ArrayList<>();
+        forEachParallel(predicate, parallelism, new ModelCallback<T>() {
+            @Override
+            public void onModel(@NonNull T model) {
+                records.add(model);
             }
         });
         return records;
-    }
+    } // getParallel
+
+    /**
+     * <p>Same as {@link BaseDataSource#forEach(Predicate, ModelCallback)} but the cursor
+     * thread only copies raw values of rows and {@link BaseDataSource#getModelFromCursor}
+     * runs on a {@link ParallelDecoder}, so it must be safe to call concurrently. Worth it
+     * when mapping a row is expensive; callback is still called in order on calling thread.</p>
+     *
+     * @param predicate   criteria for record selection
+     * @param parallelism row batches mapped at once, see {@link ParallelDecoder#getMaxParallelism()}
+     * @param callback    receives every matching record
+     */
+    @Override
+    public void forEachParallel(@NonNull Predicate predicate, int parallelism, @NonNull final ModelCallback<T> callback) {
+        flushWrites();
+        predicate.validate(getTableName(), DatabaseManager.getColumns(getDatabaseName(), getTableName()));
+        ParallelDecoder<T> decoder = new ParallelDecoder<>(parallelism, new ParallelDecoder.RowMapper<T>() {
+            @NonNull
+            @Override
+            public T map(@NonNull Cursor cursor) {
+                return toModel(cursor);
+            }
+        }, new ParallelDecoder.Receiver<T>() {
+            @Override
+            public void onDecoded(@NonNull T model) {
+                callback.onModel(model);
+            }
+        });
+
+        try {
+            DatabaseManager.queryChunked(getDatabaseName(), getTableName(), predicate.toSql(), predicate.getArgs(), getChunkSize(), getLargeColumns(), decoder);
+            decoder.finish();
+        } catch (RuntimeException e) {
+            decoder.cancel();
+            throw e;
+        }
+    } // forEachParallel
+
+    /**
+     * @param predicate criteria for record selection
+     * @return number of records matching the predicate
+     */
+    @Override
+    public long count(@NonNull Predicate predicate) {
+        flushWrites();
+        predicate.validate(getTableName(), DatabaseManager.getColumns(getDatabaseName(), getTableName()));
+        return DatabaseManager.count(getDatabaseName(), getTableName(), predicate.toSql(), predicate.getArgs());
+    } // count
+
+    /**
+     * @param predicate criteria for record selection
+     * @return number of deleted records
+     */
+    @Override
+    public int deleteWhere(@NonNull Predicate predicate) {
+        flushWrites();
+        predicate.validate(getTableName(), DatabaseManager.getColumns(getDatabaseName(), getTableName()));
+        int deleted = DatabaseManager.delete(getDatabaseName(), getTableName(), predicate.toSql(), predicate.getArgs());
+        if (deleted > 1) {
+            DatabaseVacuum.onBulkDelete(getDatabaseName());
+        }
+        return deleted;
+    } // deleteWhere
 
     /**
      * <p>Delete all records which matches the ids.</p>
@@ -218,8 +352,10 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
      */
     @Override
     public void deleteRaw(int... ids) {
+        flushWrites();
         String args = Arrays.toString(ids).replaceAll("\\[|\\]", "");
-        DatabaseManager.deleteRaw(getTableName(), getFilterKey(), args);
+        DatabaseManager.deleteRaw(getDatabaseName(), getTableName(), getFilterKey(), args);
+        DatabaseVacuum.onBulkDelete(getDatabaseName());
     }
 
 
@@ -232,29 +368,51 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
      */
     @Override
     public void updateColumn(String column, String value, int key) {
-        DatabaseManager.updateColumn(getTableName(), column, value, getFilterKey(), String.valueOf(key));
+        WriteBuffer buffer = getWriteBuffer();
+        if (buffer != null) {
+            ContentValues values = new ContentValues();
+            values.put(column, value);
+            buffer.update(String.valueOf(key), values);
+            return;
+        }
+        DatabaseManager.updateColumn(getDatabaseName(), getTableName(), column, value, getFilterKey(), String.valueOf(key));
     } // updateColumn
 
     /**
      * @return T
-     * @see {@link DatabaseManager#query(String, DatabaseManager.CursorCallback)}
+     * @see {@link DatabaseManager#queryChunked}
      */
     @NonNull
     @Override
     public List<T> getAll() {
+        flushWrites();
+        return readChunked(null, null, null, null);
+    } // getAll
+
+    /**
+     * Read records through {@link DatabaseManager#queryChunked}, so no cursor holds more
+     * than {@link BaseDataSource#getChunkSize()} rows and {@link BaseDataSource#getLargeColumns()}
+     * are read in pieces.
+     *
+     * @param orderBy order by clause, null for <code>rowid</code> order
+     * @param limit   limit clause, null for all records
+     */
+    @NonNull
+    private List<T> readChunked(String selection, String[] selectionArgs, String orderBy, String limit) {
         final List<T> records = new ArrayList<>();
-        DatabaseManager.query(getTableName(), new DatabaseManager.CursorCallback() {
+        DatabaseManager.queryChunked(getDatabaseName(), getTableName(), selection, selectionArgs, orderBy, limit, getChunkSize(), getLargeColumns(), new DatabaseManager.CursorCallback() {
             @Override
             public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
+                records.add(toModel(cursor));
             }
         });
         return records;
-    } // getAll
+    } // readChunked
 
     @Override
     public void deleteWhere(String column, String value) {
-        DatabaseManager.delete(getTableName(), column + " = ?", value);
+        flushWrites();
+        DatabaseManager.delete(getDatabaseName(), getTableName(), column + " = ?", new String[]{value});
     } // delete
 
     /**
@@ -263,12 +421,13 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
      */
     @Override
     public void insertOrUpdate(@NonNull final List<T> models) {
+        flushWrites();
         final ContentValues values = new ContentValues();
-        DatabaseManager.insert(getTableName(), models.size(), new DatabaseManager.InsertCallback() {
+        DatabaseManager.insert(getDatabaseName(), getTableName(), models.size(), new DatabaseManager.InsertCallback() {
             @NonNull
             @Override
             public ContentValues getValues(@IntRange int position) {
-                fillValues(models.get(position), values);
+                fill(models.get(position), values);
                 return values;
             }
         });
@@ -277,12 +436,13 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
 
     @Override
     public void insertOrUpdateAsync(@NonNull final List<T> models) {
+        flushWrites();
         final ContentValues values = new ContentValues();
-        DatabaseManager.insertAsync(getTableName(), models.size(), new DatabaseManager.InsertCallback() {
+        DatabaseManager.insertAsync(getDatabaseName(), getTableName(), models.size(), new DatabaseManager.InsertCallback() {
             @NonNull
             @Override
             public ContentValues getValues(@IntRange int position) {
-                fillValues(models.get(position), values);
+                fill(models.get(position), values);
                 return values;
             }
         });
@@ -296,40 +456,418 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
     @Override
     public void insertOrUpdate(T model) {
         ContentValues values = new ContentValues();
-        fillValues(model, values);
-        DatabaseManager.insert(getTableName(), values);
+        fill(model, values);
+
+        WriteBuffer buffer = getWriteBuffer();
+        if (buffer != null) {
+            buffer.insert(getWriteKey(model), values);
+            return;
+        }
+        DatabaseManager.insert(getDatabaseName(), getTableName(), values);
     } // insertOrUpdate
 
+    /**
+     * <p>Write pending buffered writes of this table on calling thread, including writes
+     * buffered through other instances. Called before every read and delete, so readers
+     * always see pending writes.</p>
+     *
+     * @see {@link BaseDataSource#getWriteWindowMillis()}
+     */
+    @Override
+    public void flushWrites() {
+        WriteBuffer buffer = WriteBuffer.find(getDatabaseName(), getTableName());
+        if (buffer != null) {
+            buffer.flush();
+        }
+    } // flushWrites
+
+    @Nullable
+    private WriteBuffer getWriteBuffer() {
+        long window = getWriteWindowMillis();
+        if (window <= 0) {
+            return null;
+        }
+        return WriteBuffer.of(getDatabaseName(), getTableName(), getFilterKey(), window);
+    } // getWriteBuffer
+
     /**
      * @param id id of row to be deleted
      * @see {@link DatabaseManager#delete(String, String, String...)}
      */
     @Override
     public void delete(int id) {
-        DatabaseManager.delete(getTableName(), getFilterKey() + " = ?", String.valueOf(id));
+        flushWrites();
+        DatabaseManager.delete(getDatabaseName(), getTableName(), getFilterKey() + " = ?", new String[]{String.valueOf(id)});
     }
 
     /**
-     * @see {@link DatabaseManager#deleteAll(String)}
+     * <p>Clear the local table. Rows are not recorded as deleted in the {@link ChangeLog},
+     * so they are not deleted on the server by the next sync.</p>
+     *
+     * @see {@link ChangeLog#runUnlogged}
      */
     @Override
     public void deleteAll() {
-        DatabaseManager.deleteAll(getTableName());
+        flushWrites();
+        ChangeLog.runUnlogged(getDatabaseName(), getTableName(), new DatabaseManager.TransactionCallback() {
+            @Override
+            public void execute(@NonNull SQLiteDatabase db) {
+                db.delete(getTableName(), null, null);
+            }
+        });
+        TableObserver.notifyChanged(getDatabaseName(), getTableName());
+        DatabaseVacuum.onBulkDelete(getDatabaseName());
     }
 
     @NonNull
     @Override
     public List<T> getAllSorted(@NonNull SortOrder sortOrder) {
-        final List<T> records = new ArrayList<>();
-        DatabaseManager.query(getTableName(), getFilterKey(), sortOrder.name(), new DatabaseManager.CursorCallback() {
+        flushWrites();
+        return readChunked(null, null, String.format("%s %s", getFilterKey(), sortOrder.name()), null);
+    } // getAllSorted
+
+    /**
+     * @param sortSpec order of returned records
+     * @return T all records of the table
+     * @see {@link DatabaseManager#queryChunked(String, String, String, String[], String, String, int, Set, DatabaseManager.CursorCallback)}
+     */
+    @NonNull
+    @Override
+    public List<T> getAllSorted(@NonNull SortSpec sortSpec) {
+        flushWrites();
+        sortSpec.validate(getTableName(), DatabaseManager.getColumns(getDatabaseName(), getTableName()));
+        return readChunked(null, null, sortSpec.toSql(), null);
+    } // getAllSorted
+
+
+    /**
+     * <p>Open a stream over a BLOB column written through {@link BlobStore}. Only the
+     * tagged column value is read from the row, spilled values are streamed from file.</p>
+     *
+     * @param id     id of the record
+     * @param column blob column, one of {@link BaseDataSource#getBlobColumns()}
+     * @return stream over stored value, null if record or value does not exist
+     * @throws IOException if spilled file could not be opened
+     */
+    @Nullable
+    public InputStream openBlob(int id, String column) throws IOException {
+        flushWrites();
+        final byte[][] value = new byte[1][];
+        String query = String.format("SELECT %s FROM %s WHERE %s = ?", column, getTableName(), getFilterKey());
+        DatabaseManager.queryRaw(getDatabaseName(), query, new String[]{String.valueOf(id)}, new DatabaseManager.CursorCallback() {
             @Override
             public void fetchData(@NonNull Cursor cursor) {
-                records.add(getModelFromCursor(cursor));
+                value[0] = cursor.getBlob(0);
             }
         });
-        return records;
-    } // getAllSorted
+        return value[0] == null ? null : BlobStore.open(value[0]);
+    } // openBlob
 
+    /**
+     * <p>Stream a value into a BLOB column of an existing record through {@link BlobStore}.
+     * Stream is not closed.</p>
+     *
+     * @param id     id of the record
+     * @param column blob column, one of {@link BaseDataSource#getBlobColumns()}
+     * @param in     value to be stored
+     * @throws IOException if value could not be written
+     */
+    public void writeBlob(int id, String column, @NonNull InputStream in) throws IOException {
+        flushWrites();
+        ContentValues values = new ContentValues();
+        values.put(column, BlobStore.encode(in));
+        DatabaseManager.update(getDatabaseName(), getTableName(), values, getFilterKey() + " = ?", String.valueOf(id));
+    } // writeBlob
+
+    /**
+     * <p>Add hashes of every spilled value referenced by this source's blob columns
+     * to <em>references</em>, for {@link BlobStore#collectGarbage(Set)}. Only BLOB values
+     * of reference length are read and parsed with {@link BlobStore#referenceOf(byte[])}.</p>
+     *
+     * @param references set to be filled
+     */
+    public void collectBlobReferences(@NonNull final Set<String> references) {
+        flushWrites();
+        for (String column : getBlobColumns()) {
+            String query = String.format("SELECT %1$s FROM %2$s WHERE typeof(%1$s) = 'blob' AND length(%1$s) = ?", column, getTableName());
+            DatabaseManager.queryRaw(getDatabaseName(), query, new String[]{String.valueOf(BlobStore.REFERENCE_LENGTH)}, new DatabaseManager.CursorCallback() {
+                @Override
+                public void fetchData(@NonNull Cursor cursor) {
+                    String reference = BlobStore.referenceOf(cursor.getBlob(0));
+                    if (reference != null) {
+                        references.add(reference);
+                    }
+                }
+            });
+        }
+    } // collectBlobReferences
+
+    /**
+     * <p>Listen for writes to this source's table, see {@link TableObserver}.</p>
+     *
+     * @param listener called on the writing thread after every write
+     */
+    public void addChangeListener(@NonNull TableObserver.Listener listener) {
+        TableObserver.addListener(getDatabaseName(), getTableName(), listener);
+    } // addChangeListener
+
+    public void removeChangeListener(@NonNull TableObserver.Listener listener) {
+        TableObserver.removeListener(getDatabaseName(), getTableName(), listener);
+    } // removeChangeListener
+
+    /**
+     * @return executor running background work of this source's database
+     */
+    @NonNull
+    public Executor getExecutor() {
+        return DatabaseManager.getExecutor(getDatabaseName());
+    } // getExecutor
+
+    /**
+     * <p>Read rows changed after a sequence, oldest first, with their current values.
+     * Call again with the sequence of the last change until an empty list is returned.
+     * Not read in chunks, the result is joined with the change log and bounded by the limit.</p>
+     *
+     * @param sequence sequence of the last change already read, 0 for all
+     * @param limit    max changes returned
+     * @return changes after the sequence
+     * @throws IllegalStateException if table has no {@link ChangeLog}
+     */
+    @NonNull
+    @Override
+    public List<Change<T>> getChangesSince(long sequence, int limit) {
+        flushWrites();
+        requireChangeLog();
+        final List<Change<T>> changes = new ArrayList<>();
+        String query = ChangeLog.selectChangesQuery(getTableName(), getFilterKey());
+        DatabaseManager.queryRaw(getDatabaseName(), query, new String[]{String.valueOf(sequence), String.valueOf(limit)}, new DatabaseManager.CursorCallback() {
+            @Override
+            public void fetchData(@NonNull Cursor cursor) {
+                long seq = cursor.getLong(cursor.getColumnIndex(ChangeLog.ALIAS_SEQUENCE));
+                long rowId = cursor.getLong(cursor.getColumnIndex(ChangeLog.ALIAS_ROW_ID));
+                String syncKey = cursor.getString(cursor.getColumnIndex(ChangeLog.ALIAS_SYNC_KEY));
+                boolean deleted = ChangeLog.DELETE.equals(cursor.getString(cursor.getColumnIndex(ChangeLog.ALIAS_OPERATION)))
+                        || cursor.isNull(cursor.getColumnIndex(getFilterKey()));
+                changes.add(new Change<>(seq, rowId, syncKey, deleted ? null : toModel(cursor)));
+            }
+        });
+        return changes;
+    } // getChangesSince
+
+    /**
+     * <p>Remove changes up to and including a sequence from the change log, called
+     * once the server has acknowledged them.</p>
+     *
+     * @param sequence sequence of the last acknowledged change
+     * @return number of removed entries
+     * @throws IllegalStateException if table has no {@link ChangeLog}
+     */
+    @Override
+    public int acknowledgeChanges(long sequence) {
+        requireChangeLog();
+        return ChangeLog.compact(getDatabaseName(), getTableName(), sequence);
+    } // acknowledgeChanges
+
+    /**
+     * <p>Apply changes received from the server in one transaction, together with the
+     * server cursor covering them. Rows are matched by {@link BaseDataSource#getSyncKeyColumn()},
+     * upserts update the matching row or insert a new one. Server changes win over pending
+     * local changes of the same rows, which are removed from the {@link ChangeLog}.</p>
+     *
+     * @param upserts     inserted or updated models
+     * @param deletedKeys keys of deleted rows
+     * @param cursor      server cursor after these changes
+     * @return number of changed rows
+     * @throws IllegalStateException if source has no sync key column
+     */
+    @Override
+    public int applyRemoteChanges(@NonNull final List<T> upserts, @NonNull final Collection<String> deletedKeys, final String cursor) {
+        final String keyColumn = getSyncKeyColumn();
+        if (keyColumn == null) {
+            throw new IllegalStateException(String.format("No sync key column for [%s].", getTableName()));
+        }
+        flushWrites();
+
+        final String database = getDatabaseName();
+        final boolean logged = ChangeLog.isEnabled(database, getTableName());
+        final int[] changed = new int[1];
+        DatabaseManager.runInTransaction(database, new DatabaseManager.TransactionCallback() {
+            @Override
+            public void execute(@NonNull SQLiteDatabase db) {
+                long sequence = logged ? ChangeLog.getLatestSequence(database, getTableName()) : 0;
+                String where = keyColumn + " = ?";
+                ContentValues values = new ContentValues();
+                for (T model : upserts) {
+                    values.clear();
+                    fill(model, values);
+                    String[] key = {values.getAsString(keyColumn)};
+                    if (db.update(getTableName(), values, where, key) == 0) {
+                        db.insert(getTableName(), null, values);
+                    }
+                    changed[0]++;
+                }
+                for (String key : deletedKeys) {
+                    changed[0] += db.delete(getTableName(), where, new String[]{key});
+                }
+                SyncState.setCursor(db, getTableName(), cursor);
+                if (logged) {
+                    ChangeLog.discardAfter(database, getTableName(), sequence);
+                }
+            }
+        });
+
+        if (changed[0] > 0) {
+            TableObserver.notifyChanged(database, getTableName());
+            DatabaseStatistics.onRowsWritten(database, getTableName(), changed[0]);
+        }
+        if (!deletedKeys.isEmpty()) {
+            DatabaseVacuum.onBulkDelete(database);
+        }
+        return changed[0];
+    } // applyRemoteChanges
+
+    /**
+     * @return server cursor stored by the last {@link BaseDataSource#applyRemoteChanges}, null if never synced
+     */
+    @Override
+    public String getSyncCursor() {
+        return SyncState.getCursor(getDatabaseName(), getTableName());
+    } // getSyncCursor
+
+    private void requireChangeLog() {
+        if (!ChangeLog.isEnabled(getDatabaseName(), getTableName())) {
+            throw new IllegalStateException(String.format("No change log for [%s].", getTableName()));
+        }
+    } // requireChangeLog
+
+    /**
+     * <p>Get BLOB columns whose values are written through {@link BlobStore}. Byte arrays
+     * put in these columns by {@link BaseDataSource#fillValues} or passed to
+     * {@link BaseDataSource#updateWhere} are stored by it, and
+     * {@link Cursor#getBlob(int)} in {@link BaseDataSource#getModelFromCursor} returns
+     * the stored values. {@link BlobStore} must be initialized first.</p>
+     *
+     * @return blob columns, empty by default
+     */
+    @NonNull
+    protected Set<String> getBlobColumns() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * <p>Register this source's {@link RetentionPolicy} with {@link TableSweeper}, so
+     * its table is swept in background once the sweeper is started.</p>
+     *
+     * @throws IllegalStateException if source has no retention policy
+     */
+    public void registerForSweeps() {
+        TableSweeper.register(getDatabaseName(), getTableName(), requireRetentionPolicy());
+    } // registerForSweeps
+
+    /**
+     * <p>Enforce this source's {@link RetentionPolicy} now, on calling thread.</p>
+     *
+     * @return rows evicted and space reclaimed
+     * @throws IllegalStateException if source has no retention policy
+     */
+    @NonNull
+    public TableSweeper.Result sweep() {
+        flushWrites();
+        return TableSweeper.sweep(getDatabaseName(), getTableName(), requireRetentionPolicy());
+    } // sweep
+
+    private RetentionPolicy requireRetentionPolicy() {
+        RetentionPolicy policy = getRetentionPolicy();
+        if (policy == null) {
+            throw new IllegalStateException(String.format("No retention policy for [%s].", getTableName()));
+        }
+        return policy;
+    } // requireRetentionPolicy
+
+    /**
+     * Get limits on how much of this source's table is kept.
+     *
+     * @return retention policy, null (default) to keep everything
+     */
+    @Nullable
+    protected RetentionPolicy getRetentionPolicy() {
+        return null;
+    }
+
+    /**
+     * Fill content values from the model, values of {@link BaseDataSource#getBlobColumns()}
+     * are stored through {@link BlobStore}.
+     */
+    private void fill(T model, ContentValues values) {
+        fillValues(model, values);
+        Set<String> blobColumns = getBlobColumns();
+        if (!blobColumns.isEmpty()) {
+            BlobStore.encode(values, blobColumns);
+        }
+    } // fill
+
+    /**
+     * Map current row to a model, with values of {@link BaseDataSource#getBlobColumns()}
+     * resolved through {@link BlobStore}.
+     */
+    private T toModel(Cursor cursor) {
+        Set<String> blobColumns = getBlobColumns();
+        return getModelFromCursor(blobColumns.isEmpty() ? cursor : BlobStore.resolve(cursor, blobColumns));
+    } // toModel
+
+    /**
+     * <p>Put a TEXT value in content values, encoded with the column's
+     * {@link ColumnCodec} if it has one and encoding saves space.</p>
+     *
+     * @param values content values to fill
+     * @param column column name
+     * @param text   value of the column
+     */
+    protected final void putText(@NonNull ContentValues values, String column, @Nullable String text) {
+        ColumnCodec codec = getCodec(column);
+        byte[] encoded = codec == null || text == null ? null : codec.encode(text);
+        if (encoded != null) {
+            values.put(column, encoded);
+        } else {
+            values.put(column, text);
+        }
+    } // putText
+
+    /**
+     * <p>Read a TEXT value written with {@link BaseDataSource#putText}. Encoded
+     * values are decoded only when {@link LazyText#get()} is called.</p>
+     * <p>
+     * <p>BLOB values of a column without codec were written while one was set, they are
+     * decoded with a {@link DeflateCodec}, which knows every registered dictionary.</p>
+     *
+     * @param cursor cursor positioned on the row
+     * @param column column name
+     * @return lazily decoded value
+     */
+    @NonNull
+    protected final LazyText getText(@NonNull Cursor cursor, String column) {
+        int index = cursor.getColumnIndex(column);
+        ColumnCodec codec = getCodec(column);
+        switch (cursor.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return LazyText.of(null);
+            case Cursor.FIELD_TYPE_BLOB:
+                return LazyText.from(cursor, index, codec == null ? PLAIN_DEFLATE : codec);
+            default:
+                return LazyText.of(cursor.getString(index));
+        }
+    } // getText
+
+    /**
+     * Get codec used to compress values of a TEXT column.
+     *
+     * @param column column name
+     * @return codec for the column, null (default) to store plain text
+     */
+    @Nullable
+    protected ColumnCodec getCodec(String column) {
+        return null;
+    }
 
     /**
      * Fill content values with values from the model. It
@@ -367,10 +905,75 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
      */
     protected abstract String getFilterKey();
 
+    /**
+     * Get name of the database which holds the table of this source. Sources
+     * living in a database other than the default one must override it.
+     *
+     * @return name of the database registered with {@link DatabaseConnection}
+     */
+    protected String getDatabaseName() {
+        return DatabaseConnection.DEFAULT_DATABASE;
+    }
+
+    /**
+     * Get TEXT/BLOB columns which may hold values too big for a cursor window.
+     * These are read in pieces by {@link BaseDataSource#getAll()} and
+     * {@link BaseDataSource#forEach(Predicate, ModelCallback)}.
+     *
+     * @return large columns, empty by default
+     */
+    @NonNull
+    protected Set<String> getLargeColumns() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Get window in which single row writes ({@link BaseDataSource#insertOrUpdate(Object)}
+     * and {@link BaseDataSource#updateColumn}) are buffered and coalesced before being
+     * written in one transaction in background.
+     *
+     * @return window in millis, 0 (default) to write immediately
+     * @see WriteBuffer
+     */
+    protected long getWriteWindowMillis() {
+        return 0;
+    }
+
+    /**
+     * Get identity of a model, buffered inserts of models with the same key are
+     * coalesced. Should be the value of a primary key or unique column.
+     *
+     * @param model model being inserted
+     * @return key of the model, null (default) to never coalesce inserts
+     */
+    @Nullable
+    protected Object getWriteKey(T model) {
+        return null;
+    }
+
+    /**
+     * Get column identifying rows across server and device, used to match changes
+     * applied by {@link BaseDataSource#applyRemoteChanges}.
+     *
+     * @return key column, null (default) if table is not synced
+     */
+    @Nullable
+    protected String getSyncKeyColumn() {
+        return null;
+    }
+
+    /**
+     * @return rows read per query by chunked reads
+     */
+    protected int getChunkSize() {
+        return DEFAULT_CHUNK_SIZE;
+    }
+
 
 
     public void updateByRawQuery(String query) {
-        DatabaseManager.queryRaw(query, new DatabaseManager.CursorCallback() {
+        flushWrites();
+        DatabaseManager.queryRaw(getDatabaseName(), query, new DatabaseManager.CursorCallback() {
             @Override
             public void fetchData(@NonNull Cursor cursor) {
 
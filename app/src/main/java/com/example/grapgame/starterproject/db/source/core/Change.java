@@ -0,0 +1,63 @@
+package com.example.grapgame.starterproject.db.source.core;
+
+import android.support.annotation.Nullable;
+
+import com.example.grapgame.starterproject.db.core.ChangeLog;
+
+/**
+ * <p>A row changed since the last acknowledged sync, read from the table's
+ * {@link ChangeLog} by {@link DataSource#getChangesSince(long, int)}.</p>
+ *
+ * @param <T> type of the changed record
+ */
+public final class Change<T> {
+
+    private final long mSequence;
+    private final long mRowId;
+    private final String mSyncKey;
+    private final T mModel;
+
+    Change(long sequence, long rowId, @Nullable String syncKey, @Nullable T model) {
+        mSequence = sequence;
+        mRowId = rowId;
+        mSyncKey = syncKey;
+        mModel = model;
+    } // Change
+
+    /**
+     * @return position of this change in the log, pass the last one to
+     * {@link DataSource#acknowledgeChanges(long)} once uploaded
+     */
+    public long getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * @return local id of the row, meaningless to the server
+     */
+    public long getRowId() {
+        return mRowId;
+    }
+
+    /**
+     * @return value of the sync key column when the row was changed, identifies
+     * deleted rows on the server
+     */
+    @Nullable
+    public String getSyncKey() {
+        return mSyncKey;
+    }
+
+    public boolean isDeleted() {
+        return mModel == null;
+    }
+
+    /**
+     * @return current state of the row, null if it was deleted
+     */
+    @Nullable
+    public T getModel() {
+        return mModel;
+    }
+
+} // Change
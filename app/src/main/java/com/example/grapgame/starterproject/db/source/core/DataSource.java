@@ -3,8 +3,11 @@ package com.example.grapgame.starterproject.db.source.core;
 import android.content.ContentValues;
 import android.support.annotation.NonNull;
 
+import com.example.grapgame.starterproject.db.core.Predicate;
 import com.example.grapgame.starterproject.db.core.SortOrder;
+import com.example.grapgame.starterproject.db.core.SortSpec;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -28,15 +31,33 @@ public interface DataSource<T> {
     @NonNull
     List<T> getAllSorted(SortOrder sortOrder);
 
+    @NonNull
+    List<T> getAllSorted(SortSpec sortSpec);
+
     @NonNull
     List<T> getAllWhere(String column, String value);
 
     @NonNull
     List<T> get(String whereClause, String... values);
 
+    @NonNull
+    List<T> get(Predicate predicate);
+
+    void forEach(Predicate predicate, ModelCallback<T> callback);
+
+    @NonNull
+    List<T> getParallel(Predicate predicate, int parallelism);
+
+    void forEachParallel(Predicate predicate, int parallelism, ModelCallback<T> callback);
+
+    long count(Predicate predicate);
+
     @NonNull
     List<T> getByLimit(int start, int end, SortOrder sortOrder, String sortColumn);
 
+    @NonNull
+    List<T> getByLimit(int start, int end, SortSpec sortSpec);
+
     T getById(int id);
 
     @NonNull
@@ -66,4 +87,24 @@ public interface DataSource<T> {
 
     void deleteAll();
 
+    int deleteWhere(Predicate predicate);
+
+    void flushWrites();
+
+    @NonNull
+    List<Change<T>> getChangesSince(long sequence, int limit);
+
+    int acknowledgeChanges(long sequence);
+
+    int applyRemoteChanges(@NonNull List<T> upserts, @NonNull Collection<String> deletedKeys, String cursor);
+
+    String getSyncCursor();
+
+    /**
+     * Receives records one at a time from streaming reads.
+     */
+    interface ModelCallback<T> {
+        void onModel(@NonNull T model);
+    } // ModelCallback
+
 } // DataSource
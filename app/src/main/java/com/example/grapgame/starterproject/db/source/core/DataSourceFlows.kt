@@ -0,0 +1,97 @@
+package com.example.grapgame.starterproject.db.source.core
+
+import com.example.grapgame.starterproject.db.core.Predicate
+import com.example.grapgame.starterproject.db.core.TableObserver
+import com.example.grapgame.starterproject.db.core.dbDispatcher
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.sendBlocking
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+
+/**
+ * Coroutine and [Flow] adapters for [BaseDataSource].
+ *
+ * One-shot calls suspend while the blocking call runs on [dispatcher]. Streams read the
+ * cursor on [Dispatchers.IO] because a slow collector blocks the reading thread, which
+ * must not starve the small executor of the database.
+ */
+
+/**
+ * Rows read ahead of a slow collector by [stream].
+ */
+private const val STREAM_BUFFER = 64
+
+/**
+ * Dispatcher running on the executor of the source's database, shared through [dbDispatcher].
+ */
+val BaseDataSource<*>.dispatcher: CoroutineDispatcher
+    get() = dbDispatcher(databaseName)
+
+/**
+ * Run any blocking call of the source on its [dispatcher], e.g. `source.onDb { getAllSorted(spec) }`.
+ */
+suspend fun <S : BaseDataSource<*>, R> S.onDb(block: S.() -> R): R =
+        withContext(dispatcher) { block() }
+
+suspend fun <T> BaseDataSource<T>.awaitAll(): List<T> = onDb { getAll() }
+
+suspend fun <T> BaseDataSource<T>.awaitGet(predicate: Predicate): List<T> = onDb { get(predicate) }
+
+suspend fun <T> BaseDataSource<T>.awaitCount(predicate: Predicate): Long = onDb { count(predicate) }
+
+suspend fun <T> BaseDataSource<T>.awaitInsertOrUpdate(models: List<T>) = onDb { insertOrUpdate(models) }
+
+suspend fun <T> BaseDataSource<T>.awaitDeleteWhere(predicate: Predicate): Int = onDb { deleteWhere(predicate) }
+
+/**
+ * Emit records matching the predicate one at a time while the cursor is read, without
+ * collecting them in a list. Cancelling the collector, or taking only the first records,
+ * stops the read and closes the cursor at the next row.
+ */
+fun <T : Any> BaseDataSource<T>.stream(predicate: Predicate): Flow<T> = flow {
+    coroutineScope {
+        val rows = Channel<T>(STREAM_BUFFER)
+        launch(Dispatchers.IO) {
+            try {
+                forEach(predicate) { model -> rows.sendBlocking(model) }
+                rows.close()
+            } catch (e: Throwable) {
+                // Channel cancelled by the collector ends the read here too.
+                rows.close(e)
+            }
+        }
+
+        try {
+            for (row in rows) {
+                emit(row)
+            }
+        } finally {
+            rows.cancel()
+        }
+    }
+}
+
+/**
+ * Emit result of the query now and again every time the source's table is written,
+ * see [TableObserver]. Writes made while the query runs are coalesced into one re-run.
+ * The listener is removed when the collector is cancelled.
+ */
+fun <S : BaseDataSource<*>, R> S.observe(query: S.() -> R): Flow<R> = flow {
+    val changes = Channel<Unit>(Channel.CONFLATED)
+    val listener = TableObserver.Listener { _, _ -> changes.offer(Unit) }
+    addChangeListener(listener)
+    try {
+        while (true) {
+            emit(withContext(dispatcher) { query() })
+            changes.receive()
+        }
+    } finally {
+        removeChangeListener(listener)
+        changes.cancel()
+    }
+}
@@ -1,15 +1,18 @@
 package com.example.grapgame.starterproject.models;
 
+import com.example.grapgame.starterproject.db.core.LazyText;
+
 public class FeedModel {
 
-    private String key, value;
+    private String key;
+    private LazyText value;
 
     public FeedModel() {
     }
 
     public FeedModel(String key, String value) {
         this.key = key;
-        this.value = value;
+        this.value = LazyText.of(value);
     }
 
     public String getKey() {
@@ -20,11 +23,18 @@ public class FeedModel {
         this.key = key;
     }
 
+    /**
+     * Value is decompressed on first call if it was stored compressed.
+     */
     public String getValue() {
-        return value;
+        return value == null ? null : value.get();
     }
 
     public void setValue(String value) {
+        this.value = LazyText.of(value);
+    }
+
+    public void setValue(LazyText value) {
         this.value = value;
     }
 }
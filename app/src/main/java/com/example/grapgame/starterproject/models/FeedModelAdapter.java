@@ -0,0 +1,64 @@
+package com.example.grapgame.starterproject.models;
+
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes {@link FeedModel} as <code>{"key": "..", "value": ..}</code> without
+ * reflection. A value which is not a string is kept as its JSON text.
+ */
+public class FeedModelAdapter extends TypeAdapter<FeedModel> {
+
+    @Override
+    public void write(JsonWriter out, FeedModel model) throws IOException {
+        if (model == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("key").value(model.getKey());
+        out.name("value").value(model.getValue());
+        out.endObject();
+    }
+
+    @Override
+    public FeedModel read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        FeedModel model = new FeedModel();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("key".equals(name) && in.peek() != JsonToken.NULL) {
+                model.setKey(in.nextString());
+            } else if ("value".equals(name)) {
+                model.setValue(readValue(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return model;
+    }
+
+    private static String readValue(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case STRING:
+            case NUMBER:
+                return in.nextString();
+            default:
+                return new JsonParser().parse(in).toString();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.grapgame.starterproject.services;
+
+
+import com.example.grapgame.starterproject.db.source.FeedSource;
+import com.example.grapgame.starterproject.models.FeedModel;
+import com.example.grapgame.starterproject.models.FeedModelAdapter;
+import com.example.grapgame.starterproject.services.core.DeltaSync;
+import com.example.grapgame.starterproject.services.core.FeedClient;
+import com.example.grapgame.starterproject.services.core.RetrofitClient;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+
+
+public class FeedSyncService extends DeltaSync<FeedModel> {
+
+    private FeedSyncService(FeedSource source) {
+        super(source, new FeedModelAdapter(), new Endpoint() {
+            @Override
+            public Call<ResponseBody> changes(String cursor, int limit) {
+                return RetrofitClient.getService(FeedClient.class).changes(cursor, limit);
+            }
+        });
+    }
+
+    public static FeedSyncService newInstance(FeedSource source) {
+        return new FeedSyncService(source);
+    }
+}
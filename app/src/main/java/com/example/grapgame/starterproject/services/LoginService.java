@@ -8,7 +8,7 @@ import com.example.grapgame.starterproject.services.core.RetrofitClient;
 import com.example.grapgame.starterproject.services.core.UserClient;
 
 
-public class LoginService extends BaseService {
+public class LoginService extends BaseService<String> {
 
     private LoginService(Context context, int requestId, Result<String> result) {
         super(context, requestId, result);
@@ -18,6 +18,6 @@ public class LoginService extends BaseService {
         return new LoginService(context, requestId, result);
     }
     public void callService(String userId, String password, int userType) {
-        RetrofitClient.getRetrofit().create(UserClient.class).login(userId, password, userType).enqueue(this);
+        enqueue(RetrofitClient.getService(UserClient.class).login(userId, password, userType));
     }
 }
\ No newline at end of file
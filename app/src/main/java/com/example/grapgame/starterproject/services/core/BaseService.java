@@ -4,43 +4,73 @@ package com.example.grapgame.starterproject.services.core;
 import android.content.Context;
 import android.text.TextUtils;
 
-import java.util.concurrent.TimeoutException;
-
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
 
-public class BaseService implements Callback<String> {
+/**
+ * Delivers decoded response bodies to a {@link Result}. Declare the endpoint with the model
+ * as its return type, e.g. <code>Call&lt;FeedModel&gt;</code>, the body is decoded by the
+ * Gson converter of {@link RetrofitClient} on the http thread, before this callback runs on
+ * the main thread. Endpoints without a known schema return <code>Call&lt;String&gt;</code>
+ * and receive the raw body.
+ *
+ * @param <T> type of response body
+ */
+public class BaseService<T> implements Callback<T> {
 
-    private Result<String> result;
+    private Result<T> result;
     private Context context;
     private int requestId;
 
-    public BaseService(Context context, int requestId, Result<String> result) {
+    public BaseService(Context context, int requestId, Result<T> result) {
         this.result = result;
         this.requestId = requestId;
         this.context = context;
     }
 
+    /**
+     * Enqueue the call, sharing the response of an identical call in flight, see {@link RequestCoalescer}.
+     */
+    protected void enqueue(Call<T> call) {
+        RequestCoalescer.enqueue(call, this);
+    }
+
     @Override
-    public void onResponse(Call<String> call, Response<String> response) {
-        if (response.isSuccessful()) {
-            String message = response.body();
-            if (!TextUtils.isEmpty(message)) {
-                result.onSuccess(message, requestId);
-            } else {
-                result.onFailure("Failed!", requestId);
-            }
+    public void onResponse(Call<T> call, Response<T> response) {
+        T body = response.body();
+        if (response.isSuccessful() && !isEmpty(body)) {
+            result.onSuccess(body, requestId);
+        } else {
+            result.onFailure("Failed!", requestId);
         }
     }
 
+    /**
+     * Called once {@link RetryInterceptor} gave up, with the error of the last attempt. That is
+     * {@link CircuitOpenException} if the host failed repeatedly and
+     * {@link java.io.InterruptedIOException} if the deadline ended. Calls persisted by
+     * {@link OfflineQueue} are reported as {@link QueuedOfflineException}.
+     */
     @Override
-    public void onFailure(Call<String> call, Throwable t) {
-        if (t instanceof NoInternetException) {
-        } else if (t instanceof TimeoutException) {
-        } else {
+    public void onFailure(Call<T> call, Throwable t) {
+        result.onError(queueIfOffline(call, t), requestId);
+    }
+
+    /**
+     * Offer a failed call to {@link OfflineQueue}, unless it was already queued.
+     *
+     * @return {@link QueuedOfflineException} if the call is queued, the error otherwise
+     */
+    static Throwable queueIfOffline(Call<?> call, Throwable t) {
+        if (!(t instanceof QueuedOfflineException) && !call.isCanceled() && OfflineQueue.offer(call.request(), t)) {
+            return new QueuedOfflineException(t);
         }
-        result.onError(t, requestId);
+        return t;
+    }
+
+    private static boolean isEmpty(Object body) {
+        return body == null || (body instanceof CharSequence && TextUtils.isEmpty((CharSequence) body));
     }
 }
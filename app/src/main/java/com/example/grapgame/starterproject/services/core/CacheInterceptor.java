@@ -0,0 +1,149 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Applies {@link CachePolicy} of endpoints and counts how responses were served. Installed
+ * as an application interceptor, {@link CacheInterceptor#network()} must be installed as a
+ * network interceptor of the same client.
+ */
+public class CacheInterceptor implements Interceptor {
+
+    private static final int GATEWAY_TIMEOUT = 504;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleOnError = new AtomicLong();
+
+    private final Interceptor network = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            Object tag = chain.request().tag();
+            if (!(tag instanceof CachePolicy) || ((CachePolicy) tag).getMaxAgeSeconds() < 0 || !response.isSuccessful()) {
+                return response;
+            }
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .header("Cache-Control", "max-age=" + ((CachePolicy) tag).getMaxAgeSeconds())
+                    .build();
+        }
+    };
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        CachePolicy policy = CachePolicy.of(request);
+        if (policy != null) {
+            request = request.newBuilder()
+                    .removeHeader(CachePolicy.MAX_AGE)
+                    .removeHeader(CachePolicy.STALE_IF_ERROR)
+                    .tag(policy)
+                    .build();
+        }
+
+        boolean staleAllowed = policy != null && policy.getStaleIfErrorSeconds() > 0 && "GET".equals(request.method());
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (!staleAllowed) {
+                throw e;
+            }
+            Response stale = stale(chain, request, policy);
+            if (stale == null) {
+                throw e;
+            }
+            return stale;
+        }
+
+        if (staleAllowed && response.code() >= 500 && response.code() != GATEWAY_TIMEOUT) {
+            Response stale = stale(chain, request, policy);
+            if (stale != null) {
+                response.close();
+                return stale;
+            }
+        }
+
+        count(response);
+        return response;
+    }
+
+    /**
+     * @return cached response not older than stale-if-error allows, null if there is none
+     */
+    private Response stale(Chain chain, Request request, CachePolicy policy) throws IOException {
+        CacheControl onlyCached = new CacheControl.Builder()
+                .onlyIfCached()
+                .maxStale(policy.getStaleIfErrorSeconds(), TimeUnit.SECONDS)
+                .build();
+        Response stale = chain.proceed(request.newBuilder().cacheControl(onlyCached).build());
+        if (stale.code() == GATEWAY_TIMEOUT) {
+            stale.close();
+            return null;
+        }
+        staleOnError.incrementAndGet();
+        return stale;
+    }
+
+    private void count(Response response) {
+        Response network = response.networkResponse();
+        if (response.cacheResponse() != null && network == null) {
+            hits.incrementAndGet();
+        } else if (response.cacheResponse() != null && network.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            revalidations.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return interceptor applying max age of policies to network responses
+     */
+    public Interceptor network() {
+        return network;
+    }
+
+    /**
+     * @return responses served from cache without touching the network
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return responses revalidated with a conditional request, served from cache on 304
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return responses downloaded in full, including conditional requests answered with a new body
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return stale responses served because the network or server failed
+     */
+    public long getStaleOnError() {
+        return staleOnError.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits[%d] revalidations[%d] misses[%d] staleOnError[%d]",
+                getHits(), getRevalidations(), getMisses(), getStaleOnError());
+    }
+}
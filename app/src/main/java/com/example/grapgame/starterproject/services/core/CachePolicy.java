@@ -0,0 +1,70 @@
+package com.example.grapgame.starterproject.services.core;
+
+import okhttp3.Request;
+
+/**
+ * Cache policy of an endpoint, declared on its Retrofit method with {@link retrofit2.http.Headers}:
+ * <pre>
+ * &#64;Headers({CachePolicy.MAX_AGE + ": 300", CachePolicy.STALE_IF_ERROR + ": 86400"})
+ * &#64;GET("feed")
+ * Call&lt;String&gt; feed();
+ * </pre>
+ * <ul>
+ * <li>{@link CachePolicy#MAX_AGE} - seconds a response is fresh, replaces the server's
+ * <code>Cache-Control</code>. After that it is revalidated with ETag/Last-Modified.</li>
+ * <li>{@link CachePolicy#STALE_IF_ERROR} - seconds a stale response may still be served
+ * when the network fails or the server answers with 5xx.</li>
+ * </ul>
+ * Only GET responses are cached. The headers are removed by {@link CacheInterceptor}
+ * before the request is sent.
+ */
+public class CachePolicy {
+
+    public static final String MAX_AGE = "X-Cache-Max-Age";
+    public static final String STALE_IF_ERROR = "X-Cache-Stale-If-Error";
+
+    private final int maxAgeSeconds;
+    private final int staleIfErrorSeconds;
+
+    private CachePolicy(int maxAgeSeconds, int staleIfErrorSeconds) {
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.staleIfErrorSeconds = staleIfErrorSeconds;
+    }
+
+    /**
+     * @return policy declared on the request, null if it has none
+     */
+    static CachePolicy of(Request request) {
+        String maxAge = request.header(MAX_AGE);
+        String staleIfError = request.header(STALE_IF_ERROR);
+        if (maxAge == null && staleIfError == null) {
+            return null;
+        }
+        return new CachePolicy(parse(maxAge), parse(staleIfError));
+    }
+
+    private static int parse(String seconds) {
+        if (seconds == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(seconds.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cache policy seconds: " + seconds, e);
+        }
+    }
+
+    /**
+     * @return seconds a response stays fresh, -1 to keep server's headers
+     */
+    public int getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    /**
+     * @return seconds a stale response may be served on error, -1 to never serve stale
+     */
+    public int getStaleIfErrorSeconds() {
+        return staleIfErrorSeconds;
+    }
+}
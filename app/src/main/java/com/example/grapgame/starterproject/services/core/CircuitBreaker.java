@@ -0,0 +1,95 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker of one host. After a number of consecutive failures the circuit opens and
+ * calls are rejected without touching the network. Once it was open for a while a single
+ * trial call is let through, its success closes the circuit and its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long trips;
+
+    /**
+     * @param failureThreshold consecutive failures opening the circuit
+     * @param openMillis       milliseconds calls are rejected before a trial call
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * @return true if a call may be made now
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            failures = 0;
+            trips++;
+        }
+    }
+
+    /**
+     * A call let through was canceled, its outcome is unknown.
+     */
+    public synchronized void onCancel() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return times the circuit opened
+     */
+    public synchronized long getTrips() {
+        return trips;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("state[%s] trips[%d]", state, trips);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of making a call while the {@link CircuitBreaker} of its host is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(String host) {
+        super("Circuit open for " + host);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.grapgame.starterproject.services.core;
+
+import android.os.Debug;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.DeflaterSink;
+import okio.ForwardingSource;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Compresses request bodies of endpoints declared with {@link CompressionInterceptor#COMPRESS}
+ * and measures compression per endpoint in {@link NetworkMetrics}:
+ * <pre>
+ * &#64;Headers(CompressionInterceptor.COMPRESS + ": gzip")
+ * &#64;POST("feed/upload")
+ * Call&lt;UploadResponse&gt; upload(&#64;Body List&lt;FeedModel&gt; changes);
+ * </pre>
+ * <ul>
+ * <li><code>gzip</code> - standard <code>Content-Encoding: gzip</code>.</li>
+ * <li><code>deflate-dict</code> - a zlib stream deflated with the preset dictionary set with
+ * {@link CompressionInterceptor#setDictionary(int, byte[])}, sent as
+ * <code>Content-Encoding: x-deflate-dict</code> with the dictionary id in
+ * {@link CompressionInterceptor#DICTIONARY_ID}. The server inflates it with a standard
+ * inflater given the dictionary of that id.</li>
+ * </ul>
+ * Bodies under {@link CompressionInterceptor#MIN_BYTES} or which do not shrink are sent as
+ * they are. A host answering a compressed request with 415 gets the request again
+ * uncompressed and no compressed requests afterwards. Responses are compressed with gzip
+ * when the server supports it, OkHttp asks for it and decodes it transparently.
+ */
+public class CompressionInterceptor implements Interceptor {
+
+    public static final String COMPRESS = "X-Compress-Request";
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE_DICTIONARY = "deflate-dict";
+    public static final String DICTIONARY_ID = "X-Deflate-Dictionary-Id";
+
+    /**
+     * Bodies smaller than this are not worth the compression header and CPU.
+     */
+    public static final long MIN_BYTES = 1024;
+
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+
+    /**
+     * CPU time of the calling thread from {@link Debug#threadCpuTimeNanos()}.
+     */
+    public static final CpuClock THREAD_CPU_CLOCK = new CpuClock() {
+        @Override
+        public long threadCpuTimeNanos() {
+            return Debug.threadCpuTimeNanos();
+        }
+    };
+
+    private final NetworkMetrics metrics;
+    private final CpuClock cpuClock;
+    private final Set<String> unsupportedHosts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile Dictionary dictionary;
+
+    public CompressionInterceptor(NetworkMetrics metrics) {
+        this(metrics, THREAD_CPU_CLOCK);
+    }
+
+    /**
+     * @param cpuClock measures compression time, e.g. a wall clock in JVM tests where
+     *                 {@link Debug} is not available
+     */
+    public CompressionInterceptor(NetworkMetrics metrics, CpuClock cpuClock) {
+        this.metrics = metrics;
+        this.cpuClock = cpuClock;
+    }
+
+    /**
+     * @param id         id the server knows the dictionary by, sent in {@link CompressionInterceptor#DICTIONARY_ID}
+     * @param dictionary preset dictionary of <code>deflate-dict</code> endpoints, e.g. from
+     *                   {@link com.example.grapgame.starterproject.db.core.DeflateCodec#buildDictionary}
+     */
+    public void setDictionary(int id, byte[] dictionary) {
+        this.dictionary = new Dictionary(id, dictionary.clone());
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String compress = request.header(COMPRESS);
+        NetworkMetrics.Endpoint endpoint = metrics.endpoint(request);
+        if (compress == null) {
+            return countDecoded(chain.proceed(request), endpoint);
+        }
+
+        request = request.newBuilder().removeHeader(COMPRESS).build();
+        String host = request.url().host();
+        RequestBody body = request.body();
+        if (body == null || request.header("Content-Encoding") != null || unsupportedHosts.contains(host)) {
+            return countDecoded(chain.proceed(request), endpoint);
+        }
+
+        Buffer plain = new Buffer();
+        body.writeTo(plain);
+        long plainSize = plain.size();
+        if (plainSize < MIN_BYTES) {
+            return countDecoded(chain.proceed(request), endpoint);
+        }
+
+        long cpuStart = cpuClock.threadCpuTimeNanos();
+        String encoding = compress.trim();
+        Dictionary dictionary = this.dictionary;
+        byte[] compressed = encode(encoding, plain.clone(), dictionary);
+        endpoint.compressionMicros.record(TimeUnit.NANOSECONDS.toMicros(cpuClock.threadCpuTimeNanos() - cpuStart));
+        endpoint.uncompressedRequestBytes.record(plainSize);
+        if (compressed == null || compressed.length >= plainSize) {
+            return countDecoded(chain.proceed(request), endpoint);
+        }
+
+        Request.Builder compressedRequest = request.newBuilder()
+                .method(request.method(), RequestBody.create(body.contentType(), compressed));
+        if (GZIP.equalsIgnoreCase(encoding)) {
+            compressedRequest.header("Content-Encoding", GZIP);
+        } else {
+            compressedRequest.header("Content-Encoding", "x-" + DEFLATE_DICTIONARY)
+                    .header(DICTIONARY_ID, String.valueOf(dictionary.id));
+        }
+        Response response = chain.proceed(compressedRequest.build());
+        if (response.code() == UNSUPPORTED_MEDIA_TYPE) {
+            unsupportedHosts.add(host);
+            response.close();
+            MediaType type = body.contentType();
+            response = chain.proceed(request.newBuilder()
+                    .method(request.method(), RequestBody.create(type, plain.readByteArray()))
+                    .build());
+        }
+        return countDecoded(response, endpoint);
+    }
+
+    /**
+     * @return compressed body, null if it can not be compressed with the encoding
+     */
+    private static byte[] encode(String encoding, Buffer plain, Dictionary dictionary) throws IOException {
+        if (GZIP.equalsIgnoreCase(encoding)) {
+            Buffer compressed = new Buffer();
+            BufferedSink gzip = Okio.buffer(new GzipSink(compressed));
+            gzip.writeAll(plain);
+            gzip.close();
+            return compressed.readByteArray();
+        }
+        if (DEFLATE_DICTIONARY.equalsIgnoreCase(encoding)) {
+            if (dictionary == null) {
+                throw new IllegalStateException("No dictionary set for " + DEFLATE_DICTIONARY + " requests.");
+            }
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                deflater.setDictionary(dictionary.bytes);
+                Buffer compressed = new Buffer();
+                BufferedSink deflate = Okio.buffer(new DeflaterSink(compressed, deflater));
+                deflate.writeAll(plain);
+                deflate.close();
+                return compressed.readByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+        throw new IllegalArgumentException("Unsupported request compression: " + encoding);
+    }
+
+    /**
+     * Count response body bytes after decompression, wire bytes are counted by {@link NetworkMetrics}.
+     */
+    private static Response countDecoded(Response response, final NetworkMetrics.Endpoint endpoint) {
+        final ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+
+        final BufferedSource counted = Okio.buffer(new ForwardingSource(body.source()) {
+            private long bytes;
+            private boolean recorded;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    bytes += read;
+                } else if (read == -1) {
+                    record();
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                record();
+                super.close();
+            }
+
+            private void record() {
+                if (!recorded) {
+                    recorded = true;
+                    endpoint.decodedResponseBytes.record(bytes);
+                }
+            }
+        });
+
+        return response.newBuilder().body(new ResponseBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return body.contentLength();
+            }
+
+            @Override
+            public BufferedSource source() {
+                return counted;
+            }
+        }).build();
+    }
+
+    private static final class Dictionary {
+        final int id;
+        final byte[] bytes;
+
+        Dictionary(int id, byte[] bytes) {
+            this.id = id;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Source of CPU time spent compressing.
+     */
+    public interface CpuClock {
+        long threadCpuTimeNanos();
+    }
+}
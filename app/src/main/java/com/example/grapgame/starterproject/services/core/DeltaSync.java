@@ -0,0 +1,280 @@
+package com.example.grapgame.starterproject.services.core;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.example.grapgame.starterproject.db.source.core.DataSource;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Syncs a table with the server by fetching only changes after the cursor of the last sync.
+ * Every page of changes is applied with {@link DataSource#applyRemoteChanges} in one
+ * transaction together with its cursor, so an interrupted sync resumes after the last
+ * applied page. A table installed from a {@link com.example.grapgame.starterproject.db.core.DatabaseSnapshot}
+ * starts at the snapshot's sync token. The server answers with:
+ * <pre>
+ * {
+ *   "cursor": "opaque cursor after these changes",
+ *   "hasMore": false,
+ *   "upserts": [{..record..}],
+ *   "deletes": ["key of deleted record"]
+ * }
+ * </pre>
+ * Fields may come in any order, records are decoded with the given {@link TypeAdapter}.
+ *
+ * @param <T> type of synced records
+ */
+public class DeltaSync<T> {
+
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGES = 1000;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "delta-sync");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static Handler mainHandler;
+
+    private final DataSource<T> source;
+    private final TypeAdapter<T> adapter;
+    private final Endpoint endpoint;
+    private final int pageSize;
+
+    private volatile Stats lastStats;
+
+    public DeltaSync(DataSource<T> source, TypeAdapter<T> adapter, Endpoint endpoint) {
+        this(source, adapter, endpoint, DEFAULT_PAGE_SIZE);
+    }
+
+    public DeltaSync(DataSource<T> source, TypeAdapter<T> adapter, Endpoint endpoint, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        this.source = source;
+        this.adapter = adapter;
+        this.endpoint = endpoint;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sync on a background thread, syncs never overlap. Result receives stats of the sync
+     * on the main thread.
+     */
+    public void enqueue(final int requestId, final Result<Stats> result) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final Stats stats = sync();
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.onSuccess(stats, requestId);
+                        }
+                    });
+                } catch (final IOException | RuntimeException e) {
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.onError(e, requestId);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetch and apply pages of changes on calling thread until the server has no more.
+     *
+     * @return stats of this sync
+     * @throws IOException if a page could not be fetched, pages applied before are kept
+     */
+    public synchronized Stats sync() throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        Stats stats = new Stats();
+        String cursor = source.getSyncCursor();
+        boolean hasMore = true;
+        while (hasMore && stats.pages < MAX_PAGES) {
+            Page<T> page = fetch(cursor, stats);
+            stats.pages++;
+            stats.upserts += page.upserts.size();
+            stats.deletes += page.deletes.size();
+            if (!page.upserts.isEmpty() || !page.deletes.isEmpty() || page.cursor != null) {
+                stats.rowsChanged += source.applyRemoteChanges(page.upserts, page.deletes,
+                        page.cursor != null ? page.cursor : cursor);
+            }
+            hasMore = page.hasMore && page.cursor != null && !page.cursor.equals(cursor);
+            if (page.cursor != null) {
+                cursor = page.cursor;
+            }
+        }
+        stats.durationMillis = SystemClock.elapsedRealtime() - start;
+        lastStats = stats;
+        return stats;
+    }
+
+    private Page<T> fetch(String cursor, Stats stats) throws IOException {
+        Response<ResponseBody> response = endpoint.changes(cursor, pageSize).execute();
+        if (!response.isSuccessful()) {
+            if (response.errorBody() != null) {
+                response.errorBody().close();
+            }
+            throw new IOException("Sync failed with http " + response.code());
+        }
+
+        ResponseBody body = response.body();
+        final long[] bytes = new long[1];
+        ForwardingSource counting = new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    bytes[0] += read;
+                }
+                return read;
+            }
+        };
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(Okio.buffer(counting).inputStream(), "UTF-8"));
+            reader.setLenient(true);
+            return read(reader);
+        } finally {
+            body.close();
+            stats.bytes += bytes[0];
+        }
+    }
+
+    private Page<T> read(JsonReader reader) throws IOException {
+        Page<T> page = new Page<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if ("cursor".equals(name)) {
+                page.cursor = reader.nextString();
+            } else if ("hasMore".equals(name)) {
+                page.hasMore = reader.nextBoolean();
+            } else if ("upserts".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    T record = adapter.read(reader);
+                    if (record != null) {
+                        page.upserts.add(record);
+                    }
+                }
+                reader.endArray();
+            } else if ("deletes".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    page.deletes.add(reader.nextString());
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return page;
+    }
+
+    /**
+     * @return stats of the last successful sync, null if there was none
+     */
+    public Stats getLastStats() {
+        return lastStats;
+    }
+
+    private static synchronized void post(Runnable runnable) {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        mainHandler.post(runnable);
+    }
+
+    /**
+     * Fetches a page of changes after a cursor, e.g. {@link FeedClient#changes(String, int)}.
+     */
+    public interface Endpoint {
+        Call<ResponseBody> changes(String cursor, int limit);
+    }
+
+    private static class Page<T> {
+        final List<T> upserts = new ArrayList<>();
+        final List<String> deletes = new ArrayList<>();
+        String cursor;
+        boolean hasMore;
+    }
+
+    /**
+     * What one sync did.
+     */
+    public static class Stats {
+        long durationMillis;
+        long bytes;
+        int pages;
+        int upserts;
+        int deletes;
+        int rowsChanged;
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return response body bytes read, after transparent gzip decoding
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getPages() {
+            return pages;
+        }
+
+        public int getUpserts() {
+            return upserts;
+        }
+
+        public int getDeletes() {
+            return deletes;
+        }
+
+        /**
+         * @return rows inserted, updated or deleted
+         */
+        public int getRowsChanged() {
+            return rowsChanged;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("duration[%dms] bytes[%d] pages[%d] upserts[%d] deletes[%d] rowsChanged[%d]",
+                    durationMillis, bytes, pages, upserts, deletes, rowsChanged);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.grapgame.starterproject.services.core;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.http.GET;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
+
+public interface FeedClient {
+
+    /**
+     * Feed changes after a cursor, see {@link DeltaSync} for the response format.
+     *
+     * @param cursor cursor of the last sync, null for everything
+     * @param limit  max changes in the page
+     */
+    @Streaming
+    @GET("feed/changes")
+    Call<ResponseBody> changes(@Query("since") String cursor, @Query("limit") int limit);
+}
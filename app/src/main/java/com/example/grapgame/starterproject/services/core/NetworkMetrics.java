@@ -0,0 +1,242 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * Records timings and sizes of calls per endpoint from OkHttp events, without touching
+ * request or response bodies. Request and response bytes are counted on the wire, i.e.
+ * compressed; sizes before compression and its CPU time are recorded by
+ * {@link CompressionInterceptor}. Endpoints are keyed by method, host and path, path segments
+ * made of digits are replaced with <code>{id}</code>. Calls served from cache have no
+ * network phases and only count as calls.
+ * <p>
+ * Phases recorded in milliseconds: DNS lookup, connect (including TLS), TLS handshake,
+ * time to first byte (request sent until response headers start) and response body
+ * transfer. DNS, connect and TLS are only recorded for calls opening a new connection.
+ */
+public class NetworkMetrics implements EventListener.Factory {
+
+    private static final int MAX_ENDPOINTS = 100;
+    private static final String OTHER = "other";
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public EventListener create(Call call) {
+        if (!enabled) {
+            return EventListener.NONE;
+        }
+        return new CallListener(endpoint(call.request()));
+    }
+
+    /**
+     * @return metrics of every endpoint called since process start or last reset
+     */
+    public Map<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableMap(new HashMap<>(endpoints));
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    Endpoint endpoint(Request request) {
+        String key = key(request);
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            if (endpoints.size() >= MAX_ENDPOINTS) {
+                key = OTHER;
+            }
+            endpoints.putIfAbsent(key, new Endpoint());
+            endpoint = endpoints.get(key);
+        }
+        return endpoint;
+    }
+
+    private static String key(Request request) {
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.url().host());
+        for (String segment : request.url().pathSegments()) {
+            key.append('/').append(isNumber(segment) ? "{id}" : segment);
+        }
+        return key.toString();
+    }
+
+    private static boolean isNumber(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            builder.append(entry.getKey()).append('\n').append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Metrics of one endpoint, times are in milliseconds and sizes in bytes.
+     */
+    public static class Endpoint {
+        public final Histogram dns = millis();
+        public final Histogram connect = millis();
+        public final Histogram tls = millis();
+        public final Histogram timeToFirstByte = millis();
+        public final Histogram download = millis();
+        public final Histogram requestBytes = new Histogram(256, 20);
+        public final Histogram responseBytes = new Histogram(256, 20);
+        public final Histogram uncompressedRequestBytes = new Histogram(256, 20);
+        public final Histogram decodedResponseBytes = new Histogram(256, 20);
+        public final Histogram compressionMicros = new Histogram(16, 20);
+
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        private static Histogram millis() {
+            return new Histogram(1, 17);
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("  calls[%d] failures[%d]%n  dns %s%n  connect %s%n  tls %s%n  ttfb %s%n"
+                            + "  download %s%n  requestBytes %s%n  responseBytes %s%n"
+                            + "  uncompressedRequestBytes %s%n  decodedResponseBytes %s%n  compressionMicros %s",
+                    getCalls(), getFailures(), dns, connect, tls, timeToFirstByte, download,
+                    requestBytes, responseBytes, uncompressedRequestBytes, decodedResponseBytes, compressionMicros);
+        }
+    }
+
+    /**
+     * Events of one call arrive in order, so plain fields are enough.
+     */
+    private static class CallListener extends EventListener {
+
+        private final Endpoint endpoint;
+
+        private long dnsStart;
+        private long connectStart;
+        private long tlsStart;
+        private long requestSent;
+        private long bodyStart;
+
+        CallListener(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            endpoint.dns.record(since(dnsStart));
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            endpoint.tls.record(since(tlsStart));
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            endpoint.connect.record(since(connectStart));
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestSent = System.nanoTime();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestSent = System.nanoTime();
+            endpoint.requestBytes.record(byteCount);
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if (requestSent != 0) {
+                endpoint.timeToFirstByte.record(since(requestSent));
+            }
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            bodyStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            endpoint.download.record(since(bodyStart));
+            endpoint.responseBytes.record(byteCount);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            endpoint.calls.incrementAndGet();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            endpoint.calls.incrementAndGet();
+            endpoint.failures.incrementAndGet();
+        }
+
+        private static long since(long start) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.example.grapgame.starterproject.services.core;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import com.example.grapgame.starterproject.db.source.OutboxSource;
+import com.example.grapgame.starterproject.models.OutboundRequest;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+
+/**
+ * Persists calls that failed for lack of connectivity in the outbox table and sends them
+ * once connectivity returns, in batches with a bounded number of concurrent calls. Only
+ * endpoints declared with {@link OfflineQueue#QUEUE} are queued, its value is the key
+ * coalescing queued requests, only the latest request of a key is sent. With value
+ * <code>true</code> only identical requests are coalesced:
+ * <pre>
+ * &#64;Headers(OfflineQueue.QUEUE + ": profile")
+ * &#64;PUT("profile")
+ * Call&lt;ProfileResponse&gt; updateProfile(..);
+ * </pre>
+ * A queued call is reported to its {@link Result} as {@link QueuedOfflineException}, its
+ * replay outcome goes to the {@link Listener}. Call {@link OfflineQueue#init(Context)} in
+ * <code>Application.onCreate()</code>, after the default database is initialised.
+ * <p>
+ * A replay stopped by a transient failure, a server error, 408, 429 or a network error while
+ * connected, is retried with jittered exponential backoff, so queued requests do not wait for
+ * the next connectivity change.
+ * <p>
+ * Credentials ({@code Authorization}, {@code Proxy-Authorization} and {@code Cookie}) are
+ * never written to the outbox. Requests are signed again at replay by the
+ * {@link Credentials} set with {@link OfflineQueue#setCredentials(Credentials)}, so a
+ * rotated token is used and nothing is sent for a user who signed out.
+ */
+public class OfflineQueue {
+
+    public static final String QUEUE = "X-Offline-Queue";
+
+    private static final long MAX_BODY_BYTES = 512 * 1024;
+    private static final int BATCH_SIZE = 20;
+    private static final int MAX_CONCURRENT = 4;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MILLIS = 5000;
+    private static final long MAX_BACKOFF_MILLIS = 10 * 60 * 1000;
+
+    /**
+     * Code reported to the {@link Listener} for a request dropped because
+     * {@link Credentials} refused to sign it.
+     */
+    public static final int NOT_SIGNED = -2;
+
+    private static final String[] CREDENTIAL_HEADERS = {"Authorization", "Proxy-Authorization", "Cookie"};
+
+    private static final OutboxSource outbox = new OutboxSource();
+
+    private static final ScheduledExecutorService replayExecutor = Executors.newSingleThreadScheduledExecutor(threads("offline-replay"));
+    private static final ExecutorService callExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT, threads("offline-call"));
+    private static final AtomicBoolean replayScheduled = new AtomicBoolean();
+    private static final Random random = new Random();
+
+    // Accessed on the replay thread only.
+    private static int failedReplays;
+    private static ScheduledFuture<?> pendingRetry;
+
+    private static final AtomicLong queued = new AtomicLong();
+    private static final AtomicLong coalesced = new AtomicLong();
+    private static final AtomicLong replayed = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static volatile ConnectivityManager connectivity;
+    private static volatile Listener listener;
+    private static volatile Credentials credentials;
+
+    private static final Interceptor interceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            if (request.header(QUEUE) != null) {
+                request = request.newBuilder().removeHeader(QUEUE).build();
+            }
+            return chain.proceed(request);
+        }
+    };
+
+    /**
+     * Start watching connectivity and send requests queued in earlier sessions.
+     */
+    public static synchronized void init(Context context) {
+        if (connectivity != null) {
+            return;
+        }
+        Context app = context.getApplicationContext();
+        connectivity = (ConnectivityManager) app.getSystemService(Context.CONNECTIVITY_SERVICE);
+        app.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (isConnected()) {
+                    replay();
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        if (isConnected()) {
+            replay();
+        }
+    }
+
+    public static void setListener(Listener listener) {
+        OfflineQueue.listener = listener;
+    }
+
+    /**
+     * @param credentials signs replayed requests, null to replay them without credentials
+     */
+    public static void setCredentials(Credentials credentials) {
+        OfflineQueue.credentials = credentials;
+    }
+
+    /**
+     * Queue a failed call if its endpoint is queueable and it failed for lack of connectivity.
+     * The request is written in background, a failed write goes to
+     * {@link Listener#onQueueFailed(OutboundRequest, RuntimeException)}.
+     *
+     * @return true if the request was queued
+     */
+    public static boolean offer(Request request, Throwable error) {
+        String queue = request.header(QUEUE);
+        if (queue == null || !isOffline(error)) {
+            return false;
+        }
+
+        final OutboundRequest outbound;
+        try {
+            outbound = toOutbound(request, queue);
+        } catch (IOException e) {
+            return false;
+        }
+        if (outbound == null) {
+            return false;
+        }
+
+        replayExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (outbox.contains(outbound.getKey())) {
+                        coalesced.incrementAndGet();
+                    }
+                    outbox.insertOrUpdate(outbound);
+                    queued.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // An uncaught exception here would crash the process, e.g. database not initialised.
+                    dropped.incrementAndGet();
+                    Listener current = listener;
+                    if (current != null) {
+                        current.onQueueFailed(outbound, e);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Send queued requests in background. Stops at the first batch with a request that
+     * failed transiently and schedules the next replay with backoff, or leaves it to the
+     * next connectivity change when offline.
+     */
+    public static void replay() {
+        if (!replayScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        replayExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                replayScheduled.set(false);
+                if (pendingRetry != null) {
+                    pendingRetry.cancel(false);
+                    pendingRetry = null;
+                }
+                List<OutboundRequest> batch;
+                while (!(batch = outbox.getOldest(BATCH_SIZE)).isEmpty()) {
+                    if (!replayBatch(batch)) {
+                        scheduleRetry();
+                        return;
+                    }
+                }
+                failedReplays = 0;
+            }
+        });
+    }
+
+    /**
+     * Replay again after a backoff doubled for every consecutive failed replay. Nothing is
+     * scheduled while offline, the connectivity receiver replays once connected.
+     */
+    private static void scheduleRetry() {
+        if (!isConnected()) {
+            return;
+        }
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(failedReplays, 16));
+        long delay = ceiling / 2 + (long) (random.nextDouble() * ceiling / 2);
+        failedReplays++;
+        pendingRetry = replayExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return false if any request of the batch failed for connectivity or server errors
+     */
+    private static boolean replayBatch(List<OutboundRequest> batch) {
+        final CountDownLatch done = new CountDownLatch(batch.size());
+        final AtomicBoolean allSent = new AtomicBoolean(true);
+        for (final OutboundRequest request : batch) {
+            callExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!send(request)) {
+                            allSent.set(false);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return allSent.get();
+    }
+
+    /**
+     * @return false if the request stays queued
+     */
+    private static boolean send(OutboundRequest request) {
+        Request signed = sign(toRequest(request));
+        if (signed == null) {
+            outbox.delete(request.getId());
+            dropped.incrementAndGet();
+            notifyListener(request, NOT_SIGNED);
+            return true;
+        }
+
+        int code;
+        try {
+            Response response = RetrofitClient.getHttpClient().newCall(signed).execute();
+            code = response.code();
+            response.close();
+        } catch (IOException e) {
+            code = -1;
+        }
+
+        boolean transientFailure = code < 0 || code >= 500 || code == 408 || code == 429;
+        if (!transientFailure) {
+            outbox.delete(request.getId());
+            replayed.incrementAndGet();
+            notifyListener(request, code);
+            return true;
+        }
+
+        request.setAttempts(request.getAttempts() + 1);
+        if (request.getAttempts() >= MAX_ATTEMPTS) {
+            outbox.delete(request.getId());
+            dropped.incrementAndGet();
+            notifyListener(request, code);
+            return true;
+        }
+        outbox.setAttempts(request.getId(), request.getAttempts());
+        return false;
+    }
+
+    /**
+     * @return request with current credentials, null if it must not be sent
+     */
+    private static Request sign(Request request) {
+        Credentials current = credentials;
+        return current == null ? request : current.sign(request);
+    }
+
+    private static void notifyListener(OutboundRequest request, int code) {
+        Listener current = listener;
+        if (current != null) {
+            current.onReplayed(request, code);
+        }
+    }
+
+    /**
+     * @return request to persist, null if its body is too large
+     */
+    private static OutboundRequest toOutbound(Request request, String queue) throws IOException {
+        byte[] body = null;
+        String contentType = null;
+        if (request.body() != null) {
+            Buffer buffer = new Buffer();
+            request.body().writeTo(buffer);
+            if (buffer.size() > MAX_BODY_BYTES) {
+                return null;
+            }
+            body = buffer.readByteArray();
+            MediaType type = request.body().contentType();
+            contentType = type == null ? null : type.toString();
+        }
+
+        OutboundRequest outbound = new OutboundRequest();
+        outbound.setMethod(request.method());
+        outbound.setUrl(request.url().toString());
+        outbound.setHeaders(withoutCredentials(request.headers()).toString());
+        outbound.setContentType(contentType);
+        outbound.setBody(body);
+        outbound.setCreatedAt(System.currentTimeMillis());
+        outbound.setKey("true".equalsIgnoreCase(queue.trim()) ? identity(outbound) : queue.trim());
+        return outbound;
+    }
+
+    private static Request toRequest(OutboundRequest outbound) {
+        Headers.Builder headers = new Headers.Builder();
+        if (outbound.getHeaders() != null) {
+            for (String line : outbound.getHeaders().split("\n")) {
+                if (!line.trim().isEmpty()) {
+                    headers.add(line);
+                }
+            }
+        }
+        RequestBody body = null;
+        if (outbound.getBody() != null) {
+            MediaType type = outbound.getContentType() == null ? null : MediaType.parse(outbound.getContentType());
+            body = RequestBody.create(type, outbound.getBody());
+        }
+        return new Request.Builder()
+                .url(outbound.getUrl())
+                .headers(withoutCredentials(headers.removeAll(QUEUE).build()))
+                .method(outbound.getMethod(), body)
+                .build();
+    }
+
+    private static Headers withoutCredentials(Headers headers) {
+        Headers.Builder builder = headers.newBuilder();
+        for (String name : CREDENTIAL_HEADERS) {
+            builder.removeAll(name);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return key equal for identical requests
+     */
+    private static String identity(OutboundRequest request) {
+        StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getUrl());
+        if (request.getBody() != null) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1").digest(request.getBody());
+                key.append(' ');
+                for (byte b : digest) {
+                    key.append(String.format("%02x", b));
+                }
+            } catch (NoSuchAlgorithmException e) {
+                key.append(' ').append(request.getCreatedAt());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return true if the error means the request did not reach the server for lack of connectivity
+     */
+    private static boolean isOffline(Throwable error) {
+        return error instanceof NoInternetException || error instanceof UnknownHostException
+                || error instanceof ConnectException || !isConnected();
+    }
+
+    private static boolean isConnected() {
+        ConnectivityManager manager = connectivity;
+        if (manager == null) {
+            return true;
+        }
+        NetworkInfo info = manager.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+
+    private static ThreadFactory threads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * @return interceptor removing {@link OfflineQueue#QUEUE} from requests
+     */
+    public static Interceptor interceptor() {
+        return interceptor;
+    }
+
+    /**
+     * @return requests written to the outbox
+     */
+    public static long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return queued requests replacing an older request with the same key
+     */
+    public static long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return queued requests sent and answered by the server
+     */
+    public static long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * @return queued requests given up after {@link OfflineQueue#MAX_ATTEMPTS} failed replays
+     */
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Receives the outcome of replayed requests, on a background thread.
+     */
+    public interface Listener {
+        /**
+         * @param code http status of the response, -1 if dropped after a network error,
+         *             {@link OfflineQueue#NOT_SIGNED} if dropped for lack of credentials
+         */
+        void onReplayed(OutboundRequest request, int code);
+
+        /**
+         * Called when a request reported as queued could not be written to the outbox.
+         */
+        void onQueueFailed(OutboundRequest request, RuntimeException error);
+    }
+
+    /**
+     * Adds current credentials to replayed requests, on a background thread.
+     */
+    public interface Credentials {
+        /**
+         * @param request replayed request, without credentials
+         * @return request with credentials, or null to drop it, e.g. when signed out
+         */
+        Request sign(Request request);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.io.IOException;
+
+/**
+ * Reported instead of the network error when a failed call was persisted by
+ * {@link OfflineQueue} and will be sent once connectivity returns.
+ */
+public class QueuedOfflineException extends IOException {
+
+    public QueuedOfflineException(Throwable cause) {
+        super("Request queued until connectivity returns", cause);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Shares one network call between identical GET and HEAD calls enqueued while it is in
+ * flight. Calls are identical when method, url and headers are equal. Other methods are
+ * never coalesced, as merging them would drop writes the caller meant to send.
+ * <p>
+ * Every waiting callback receives the same decoded body, so callbacks must not modify it,
+ * and its own copy of the error body. A failure is offered to {@link OfflineQueue} once,
+ * waiters then receive {@link QueuedOfflineException} instead of queueing the request again.
+ */
+public class RequestCoalescer {
+
+    private static final Map<String, List<Callback<?>>> inFlight = new HashMap<>();
+    private static final AtomicLong sharedCalls = new AtomicLong();
+    private static final AtomicLong savedCalls = new AtomicLong();
+
+    /**
+     * Enqueue the call, or wait for an identical call already in flight and drop this one.
+     */
+    public static <T> void enqueue(final Call<T> call, Callback<T> callback) {
+        final String key = key(call.request());
+        if (key == null) {
+            call.enqueue(callback);
+            return;
+        }
+
+        synchronized (inFlight) {
+            List<Callback<?>> waiting = inFlight.get(key);
+            if (waiting != null) {
+                waiting.add(callback);
+                savedCalls.incrementAndGet();
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            inFlight.put(key, waiting);
+        }
+        sharedCalls.incrementAndGet();
+
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                List<Callback<T>> waiting = RequestCoalescer.<T>complete(key);
+                if (response.isSuccessful() || waiting.size() == 1) {
+                    for (Callback<T> callback : waiting) {
+                        callback.onResponse(call, response);
+                    }
+                    return;
+                }
+
+                byte[] errorBody = readErrorBody(response);
+                MediaType contentType = response.errorBody() == null ? null : response.errorBody().contentType();
+                for (Callback<T> callback : waiting) {
+                    callback.onResponse(call, Response.<T>error(ResponseBody.create(contentType, errorBody), response.raw()));
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                Throwable error = BaseService.queueIfOffline(call, t);
+                for (Callback<T> callback : RequestCoalescer.<T>complete(key)) {
+                    callback.onFailure(call, error);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<Callback<T>> complete(String key) {
+        synchronized (inFlight) {
+            List<?> waiting = inFlight.remove(key);
+            return (List<Callback<T>>) waiting;
+        }
+    }
+
+    /**
+     * @return key of the request, null if it must not be coalesced
+     */
+    private static String key(Request request) {
+        String method = request.method();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+        return method + ' ' + request.url() + '\n' + request.headers();
+    }
+
+    /**
+     * @return bytes of the error body, empty if there is none or it could not be read
+     */
+    private static byte[] readErrorBody(Response<?> response) {
+        ResponseBody body = response.errorBody();
+        if (body == null) {
+            return new byte[0];
+        }
+        try {
+            return body.bytes();
+        } catch (IOException e) {
+            return new byte[0];
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * @return network calls made for coalesced requests
+     */
+    public static long getSharedCalls() {
+        return sharedCalls.get();
+    }
+
+    /**
+     * @return calls not made because an identical call was in flight
+     */
+    public static long getSavedCalls() {
+        return savedCalls.get();
+    }
+}
@@ -1,37 +1,249 @@
 package com.example.grapgame.starterproject.services.core;
 
+import android.content.Context;
+
+import com.example.grapgame.starterproject.BuildConfig;
+import com.example.grapgame.starterproject.models.FeedModel;
+import com.example.grapgame.starterproject.models.FeedModelAdapter;
+
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
-import okhttp3.logging.HttpLoggingInterceptor;
+import okhttp3.Protocol;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
 
+/**
+ * Holds the one {@link OkHttpClient} and {@link Retrofit} of the app, so every call
+ * shares a connection pool and dispatcher. Service proxies are created once per
+ * interface, use {@link RetrofitClient#getService(Class)} instead of
+ * <code>getRetrofit().create(..)</code>.
+ * <p>
+ * Call {@link RetrofitClient#init(Context)} in <code>Application.onCreate()</code> to give
+ * the client a disk cache, see {@link CachePolicy} for per endpoint caching and
+ * {@link RetryPolicy} for per endpoint deadlines and retries.
+ * <p>
+ * Every call is measured by {@link RetrofitClient#getNetworkMetrics()}. Bodies are not
+ * logged, debug builds can log a sample of them with
+ * {@link RetrofitClient#setBodyLogSampleRate(double)}.
+ */
 public class RetrofitClient {
     private static final String BASE_URL = "UPDATE_BASE_URL_HERE";
-    private static final int TIME_OUT = 30;
-    private static Retrofit retrofit = null;
+    private static final int CONNECT_TIME_OUT = 10;
+    private static final int TIME_OUT = 15;
+
+    private static final int MAX_REQUESTS = 64;
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final int KEEP_ALIVE_MINUTES = 5;
+    private static final long DEFAULT_CACHE_SIZE = 10 * 1024 * 1024;
+    private static final String CACHE_DIRECTORY = "http";
+
+    private static final ConcurrentMap<Class<?>, Object> services = new ConcurrentHashMap<>();
+
+    /**
+     * Gson caches the type adapter of every type it decoded, share this instance instead of
+     * creating new ones. Models with a hand written adapter are registered here.
+     */
+    private static final Gson gson = new GsonBuilder()
+            .setLenient()
+            .registerTypeAdapter(FeedModel.class, new FeedModelAdapter())
+            .create();
+
+    private static volatile Retrofit retrofit;
+    private static volatile OkHttpClient httpClient;
+    private static Cache cache;
+    private static final CacheInterceptor cacheInterceptor = new CacheInterceptor();
+    private static final RetryInterceptor retryInterceptor = new RetryInterceptor();
+    private static final NetworkMetrics networkMetrics = new NetworkMetrics();
+    private static final CompressionInterceptor compressionInterceptor = new CompressionInterceptor(networkMetrics);
+    private static final SampledLoggingInterceptor bodyLogging = new SampledLoggingInterceptor();
+
+    public static void init(Context context) {
+        init(context, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Give the client a disk cache. Must be called before the client is first used.
+     *
+     * @param cacheSize max bytes of cached responses
+     */
+    public static void init(Context context, long cacheSize) {
+        init(new File(context.getCacheDir(), CACHE_DIRECTORY), cacheSize);
+    }
+
+    /**
+     * Give the client a disk cache in the given directory. Must be called before the client
+     * is first used.
+     *
+     * @param cacheSize max bytes of cached responses
+     */
+    public static synchronized void init(File directory, long cacheSize) {
+        if (httpClient != null) {
+            throw new IllegalStateException("RetrofitClient is already in use, init it before first call.");
+        }
+        cache = new Cache(directory, cacheSize);
+    }
+
+    public static Retrofit getRetrofit() {
+        Retrofit instance = retrofit;
+        if (instance == null) {
+            synchronized (RetrofitClient.class) {
+                instance = retrofit;
+                if (instance == null) {
+                    instance = new Retrofit.Builder().baseUrl(BASE_URL).addConverterFactory(ScalarsConverterFactory.create())
+                            .addConverterFactory(GsonConverterFactory.create(gson)).client(getHttpClient()).build();
+                    retrofit = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    public static Gson getGson() {
+        return gson;
+    }
+
+    public static OkHttpClient getHttpClient() {
+        OkHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (RetrofitClient.class) {
+                client = httpClient;
+                if (client == null) {
+                    client = buildHttpClient();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * @param service Retrofit interface, e.g. {@link UserClient}
+     * @return proxy of the interface, created on first call and shared afterwards
+     */
+    @SuppressWarnings("unchecked")
+    public static <S> S getService(Class<S> service) {
+        Object proxy = services.get(service);
+        if (proxy == null) {
+            services.putIfAbsent(service, getRetrofit().create(service));
+            proxy = services.get(service);
+        }
+        return (S) proxy;
+    }
+
+    /**
+     * @return current state of the connection pool and dispatcher
+     */
+    public static Stats getStats() {
+        OkHttpClient client = getHttpClient();
+        ConnectionPool pool = client.connectionPool();
+        Dispatcher dispatcher = client.dispatcher();
+        return new Stats(pool.connectionCount(), pool.idleConnectionCount(),
+                dispatcher.runningCallsCount(), dispatcher.queuedCallsCount());
+    }
+
+    /**
+     * @return how responses were served since process start
+     */
+    public static CacheInterceptor getCacheStats() {
+        return cacheInterceptor;
+    }
+
+    /**
+     * @return retries, deadlines exceeded and circuit breaker state of every host
+     */
+    public static RetryInterceptor getRetryStats() {
+        return retryInterceptor;
+    }
+
+    /**
+     * @return interceptor compressing request bodies, e.g. to set its dictionary
+     */
+    public static CompressionInterceptor getCompression() {
+        return compressionInterceptor;
+    }
+
+    /**
+     * @return timings and sizes of calls per endpoint
+     */
+    public static NetworkMetrics getNetworkMetrics() {
+        return networkMetrics;
+    }
+
+    /**
+     * Log full request and response bodies of a fraction of calls. Has no effect in release builds.
+     *
+     * @param sampleRate fraction of calls to log, 0 to log none
+     */
+    public static void setBodyLogSampleRate(double sampleRate) {
+        bodyLogging.setSampleRate(sampleRate);
+    }
 
-    public static Retrofit getRetrofit(){
-        if(retrofit==null){
-            OkHttpClient.Builder okClient = new OkHttpClient.Builder();
-            okClient.connectTimeout(TIME_OUT, TimeUnit.SECONDS);
-            okClient.readTimeout(TIME_OUT,TimeUnit.SECONDS);
-            okClient.writeTimeout(TIME_OUT,TimeUnit.SECONDS);
+    private static OkHttpClient buildHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
 
-            HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
-            interceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-            okClient.addInterceptor(interceptor);
+        OkHttpClient.Builder okClient = new OkHttpClient.Builder();
+        okClient.connectTimeout(CONNECT_TIME_OUT, TimeUnit.SECONDS);
+        okClient.readTimeout(TIME_OUT, TimeUnit.SECONDS);
+        okClient.writeTimeout(TIME_OUT, TimeUnit.SECONDS);
+        okClient.dispatcher(dispatcher);
+        okClient.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES));
+        // HTTP/2 multiplexes calls to the same host over one connection when the server supports it.
+        okClient.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
 
-            Gson gson = new GsonBuilder().setLenient().create();
+        if (cache != null) {
+            okClient.cache(cache);
+        }
+        okClient.addInterceptor(OfflineQueue.interceptor());
+        okClient.addInterceptor(cacheInterceptor);
+        // Outside the retry interceptor, so a body is compressed once for all attempts.
+        okClient.addInterceptor(compressionInterceptor);
+        // Inside the cache interceptor, so stale-if-error is only served once retries gave up.
+        okClient.addInterceptor(retryInterceptor);
+        okClient.addNetworkInterceptor(cacheInterceptor.network());
+        okClient.eventListenerFactory(networkMetrics);
+
+        if (BuildConfig.DEBUG) {
+            okClient.addInterceptor(bodyLogging);
+        }
+
+        return okClient.build();
+    }
+
+    /**
+     * Snapshot of connection pool and dispatcher usage.
+     */
+    public static class Stats {
+        public final int connections;
+        public final int idleConnections;
+        public final int runningCalls;
+        public final int queuedCalls;
+
+        Stats(int connections, int idleConnections, int runningCalls, int queuedCalls) {
+            this.connections = connections;
+            this.idleConnections = idleConnections;
+            this.runningCalls = runningCalls;
+            this.queuedCalls = queuedCalls;
+        }
 
-            retrofit = new Retrofit.Builder().baseUrl(BASE_URL).addConverterFactory(ScalarsConverterFactory.create())
-                    .addConverterFactory(GsonConverterFactory.create(gson)).client(okClient.build()).build();
+        @Override
+        public String toString() {
+            return String.format("connections[%d] idle[%d] running[%d] queued[%d]",
+                    connections, idleConnections, runningCalls, queuedCalls);
         }
-        return retrofit;
     }
 }
@@ -0,0 +1,259 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.AsyncTimeout;
+import okio.Timeout;
+
+/**
+ * Retries failed calls with jittered exponential backoff within a deadline, see {@link RetryPolicy}
+ * for per endpoint settings. The deadline is set on the call's own timeout (see
+ * {@link okhttp3.Call#timeout()}), so it bounds all attempts together, from the first connect
+ * to the last byte of the response body, and the call is canceled when it ends.
+ * <p>
+ * A call is retried after an I/O error or a 408, 429, 500, 502, 503 or 504 response, unless it
+ * is not idempotent and may have reached the server. <code>Retry-After</code> of a response is
+ * honoured when it fits in the deadline. Every host has a {@link CircuitBreaker}, calls to a host
+ * with an open circuit fail with {@link CircuitOpenException}.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final long DEFAULT_DEADLINE_MILLIS = 30000;
+    private static final int DEFAULT_MAX_RETRIES = 2;
+    private static final long DEFAULT_BASE_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_MILLIS = 30000;
+
+    private final long deadlineMillis;
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong deadlinesExceeded = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RetryInterceptor() {
+        this(DEFAULT_DEADLINE_MILLIS, DEFAULT_MAX_RETRIES, DEFAULT_BASE_BACKOFF_MILLIS,
+                DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    /**
+     * @param deadlineMillis    default deadline of a call including retries
+     * @param maxRetries        default retries after the first attempt
+     * @param baseBackoffMillis backoff before first retry, doubled for every further retry
+     * @param failureThreshold  consecutive failures opening the circuit of a host
+     * @param openMillis        milliseconds an open circuit rejects calls
+     */
+    public RetryInterceptor(long deadlineMillis, int maxRetries, long baseBackoffMillis,
+                            int failureThreshold, long openMillis) {
+        this.deadlineMillis = deadlineMillis;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        // Cache lookups of stale-if-error never touch the network.
+        if (request.cacheControl().onlyIfCached()) {
+            return chain.proceed(request);
+        }
+
+        RetryPolicy policy = RetryPolicy.of(request, deadlineMillis, maxRetries);
+        request = request.newBuilder()
+                .removeHeader(RetryPolicy.DEADLINE)
+                .removeHeader(RetryPolicy.MAX_RETRIES)
+                .removeHeader(RetryPolicy.IDEMPOTENT)
+                .build();
+
+        String host = request.url().host();
+        CircuitBreaker breaker = breaker(host);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getDeadlineMillis());
+        applyDeadline(chain.call().timeout(), policy.getDeadlineMillis());
+
+        for (int attempt = 0; ; attempt++) {
+            long left = remainingMillis(deadline);
+            if (left <= 0) {
+                deadlinesExceeded.incrementAndGet();
+                throw new InterruptedIOException("Deadline of " + policy.getDeadlineMillis() + "ms exceeded");
+            }
+            if (!breaker.allowRequest()) {
+                rejected.incrementAndGet();
+                throw new CircuitOpenException(host);
+            }
+
+            boolean canRetry = attempt < policy.getMaxRetries();
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (chain.call().isCanceled() && remainingMillis(deadline) <= 0) {
+                    deadlinesExceeded.incrementAndGet();
+                    breaker.onFailure();
+                    InterruptedIOException timeout = new InterruptedIOException("Deadline of " + policy.getDeadlineMillis() + "ms exceeded");
+                    timeout.initCause(e);
+                    throw timeout;
+                }
+                if (chain.call().isCanceled()) {
+                    breaker.onCancel();
+                    throw e;
+                }
+                breaker.onFailure();
+                if (!canRetry || !(policy.isIdempotent() || notSent(e))
+                        || !backoff(attempt, -1, deadline)) {
+                    throw e;
+                }
+                continue;
+            } catch (RuntimeException e) {
+                breaker.onFailure();
+                throw e;
+            }
+
+            if (!isRetryable(response.code())) {
+                if (response.code() < 500) {
+                    breaker.onSuccess();
+                } else {
+                    breaker.onFailure();
+                }
+                return response;
+            }
+
+            breaker.onFailure();
+            if (!canRetry || !policy.isIdempotent() || !backoff(attempt, retryAfterMillis(response), deadline)) {
+                return response;
+            }
+            response.close();
+        }
+    }
+
+    /**
+     * Sleep before next attempt.
+     *
+     * @return false if the deadline ends before the backoff does
+     */
+    private boolean backoff(int attempt, long retryAfterMillis, long deadline) throws InterruptedIOException {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << Math.min(attempt, 16));
+        long delay = Math.max((long) (random.nextDouble() * ceiling), retryAfterMillis);
+        if (delay >= remainingMillis(deadline)) {
+            return false;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+        retries.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * The call's timeout was entered before interceptors run, with the client's call timeout.
+     * Re-enter it with the deadline, which is combined with that timeout, so the earlier of
+     * both cancels the call.
+     */
+    private static void applyDeadline(Timeout timeout, long deadlineMillis) {
+        if (!(timeout instanceof AsyncTimeout)) {
+            throw new IllegalStateException("Call timeout is not supported by this OkHttp version.");
+        }
+        AsyncTimeout callTimeout = (AsyncTimeout) timeout;
+        callTimeout.exit();
+        callTimeout.deadline(deadlineMillis, TimeUnit.MILLISECONDS);
+        callTimeout.enter();
+    }
+
+    /**
+     * @return true if the request could not have reached the server
+     */
+    private static boolean notSent(IOException e) {
+        return e instanceof ConnectException || e instanceof UnknownHostException;
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    /**
+     * @return milliseconds of a <code>Retry-After</code> given in seconds, -1 if there is none
+     */
+    private static long retryAfterMillis(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long remainingMillis(long deadline) {
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    private CircuitBreaker breaker(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        if (breaker == null) {
+            breakers.putIfAbsent(host, new CircuitBreaker(failureThreshold, openMillis));
+            breaker = breakers.get(host);
+        }
+        return breaker;
+    }
+
+    /**
+     * @return circuit breaker of every host called so far
+     */
+    public Map<String, CircuitBreaker> getBreakers() {
+        return Collections.unmodifiableMap(new HashMap<>(breakers));
+    }
+
+    /**
+     * @return attempts made after a failed one
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return calls failed because their deadline ended
+     */
+    public long getDeadlinesExceeded() {
+        return deadlinesExceeded.get();
+    }
+
+    /**
+     * @return calls rejected by an open circuit
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("retries[%d] deadlinesExceeded[%d] rejected[%d] breakers%s",
+                getRetries(), getDeadlinesExceeded(), getRejected(), breakers);
+    }
+}
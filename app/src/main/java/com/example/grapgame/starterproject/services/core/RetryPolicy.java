@@ -0,0 +1,87 @@
+package com.example.grapgame.starterproject.services.core;
+
+import okhttp3.Request;
+
+/**
+ * Retry policy of an endpoint, declared on its Retrofit method with {@link retrofit2.http.Headers}:
+ * <pre>
+ * &#64;Headers({RetryPolicy.DEADLINE + ": 5000", RetryPolicy.MAX_RETRIES + ": 1"})
+ * &#64;GET("feed")
+ * Call&lt;List&lt;FeedModel&gt;&gt; feed();
+ * </pre>
+ * <ul>
+ * <li>{@link RetryPolicy#DEADLINE} - milliseconds the call may take including retries and backoff.</li>
+ * <li>{@link RetryPolicy#MAX_RETRIES} - attempts after the first one, 0 to never retry.</li>
+ * <li>{@link RetryPolicy#IDEMPOTENT} - <code>true</code> to retry a method other than GET, HEAD,
+ * PUT, DELETE or OPTIONS after it reached the server.</li>
+ * </ul>
+ * Endpoints without a header get the defaults of {@link RetryInterceptor}. The headers are
+ * removed by {@link RetryInterceptor} before the request is sent.
+ */
+public class RetryPolicy {
+
+    public static final String DEADLINE = "X-Deadline-Millis";
+    public static final String MAX_RETRIES = "X-Max-Retries";
+    public static final String IDEMPOTENT = "X-Idempotent";
+
+    private final long deadlineMillis;
+    private final int maxRetries;
+    private final boolean idempotent;
+
+    RetryPolicy(long deadlineMillis, int maxRetries, boolean idempotent) {
+        this.deadlineMillis = deadlineMillis;
+        this.maxRetries = maxRetries;
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * @return policy declared on the request, given defaults for anything not declared
+     */
+    static RetryPolicy of(Request request, long defaultDeadlineMillis, int defaultMaxRetries) {
+        String deadline = request.header(DEADLINE);
+        String retries = request.header(MAX_RETRIES);
+        boolean idempotent = Boolean.parseBoolean(request.header(IDEMPOTENT)) || isIdempotent(request.method());
+        return new RetryPolicy(deadline == null ? defaultDeadlineMillis : parse(deadline),
+                retries == null ? defaultMaxRetries : (int) parse(retries), idempotent);
+    }
+
+    private static boolean isIdempotent(String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static long parse(String value) {
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed < 0) {
+                throw new IllegalArgumentException("Retry policy value must not be negative: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid retry policy value: " + value, e);
+        }
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @return true if the request may be sent again after it reached the server
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.grapgame.starterproject.services.core;
+
+import java.io.IOException;
+import java.util.Random;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.logging.HttpLoggingInterceptor;
+
+/**
+ * Logs full bodies of a sample of calls. Logging a body buffers and formats all of it, so
+ * the sample rate is 0 unless set and {@link RetrofitClient} only installs this in debug builds.
+ */
+public class SampledLoggingInterceptor implements Interceptor {
+
+    private final HttpLoggingInterceptor logging = new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY);
+    private final Random random = new Random();
+    private volatile double sampleRate;
+
+    /**
+     * @param sampleRate fraction of calls to log, between 0 and 1
+     */
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1.");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        double rate = sampleRate;
+        if (rate > 0 && random.nextDouble() < rate) {
+            return logging.intercept(chain);
+        }
+        return chain.proceed(chain.request());
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.grapgame.starterproject.services.core;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.grapgame.starterproject.db.source.core.DataSource;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Decodes a JSON array response record by record while it downloads and writes the
+ * records to a {@link Sink} in batches, so the body is never held in memory as a whole.
+ * Declare the endpoint with {@link retrofit2.http.Streaming} and a
+ * <code>Call&lt;ResponseBody&gt;</code> return type:
+ * <pre>
+ * &#64;Streaming
+ * &#64;GET("feed")
+ * Call&lt;ResponseBody&gt; feed();
+ * </pre>
+ * Records are found in the top level array or, if an array field is given, in that
+ * field of the top level object, e.g. <code>{"data": [..]}</code>. With
+ * {@link StreamingService#into(DataSource)} every batch is one transaction of
+ * {@link DataSource#insertOrUpdate(List)}, batches written before a failure are kept.
+ *
+ * @param <T> type of decoded records
+ */
+public class StreamingService<T> {
+
+    private static final int DEFAULT_BATCH_SIZE = 200;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "http-stream");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static Handler mainHandler;
+
+    private final TypeAdapter<T> adapter;
+    private final String arrayField;
+    private final int batchSize;
+    private final Sink<T> sink;
+
+    /**
+     * @param adapter    decodes one record
+     * @param arrayField field of top level object holding the records, null for a top level array
+     * @param sink       receives records in batches
+     */
+    public StreamingService(TypeAdapter<T> adapter, String arrayField, Sink<T> sink) {
+        this(adapter, arrayField, DEFAULT_BATCH_SIZE, sink);
+    }
+
+    public StreamingService(TypeAdapter<T> adapter, String arrayField, int batchSize, Sink<T> sink) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.adapter = adapter;
+        this.arrayField = arrayField;
+        this.batchSize = batchSize;
+        this.sink = sink;
+    }
+
+    /**
+     * @return sink inserting every batch into the source in one transaction
+     */
+    public static <T> Sink<T> into(final DataSource<T> source) {
+        return new Sink<T>() {
+            @Override
+            public void onBatch(List<T> batch) {
+                source.insertOrUpdate(batch);
+            }
+        };
+    }
+
+    /**
+     * Run the call and decode its body on a background thread. Result receives the
+     * number of decoded records on the main thread.
+     */
+    public void enqueue(final Call<ResponseBody> call, final int requestId, final Result<Integer> result) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Response<ResponseBody> response = call.execute();
+                    if (!response.isSuccessful()) {
+                        if (response.errorBody() != null) {
+                            response.errorBody().close();
+                        }
+                        post(new Runnable() {
+                            @Override
+                            public void run() {
+                                result.onFailure("Failed!", requestId);
+                            }
+                        });
+                        return;
+                    }
+
+                    final int count = decode(response.body());
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.onSuccess(count, requestId);
+                        }
+                    });
+                } catch (final IOException | RuntimeException e) {
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            result.onError(e, requestId);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Decode a response body on calling thread, the body is closed afterwards.
+     *
+     * @return number of decoded records
+     */
+    public int decode(ResponseBody body) throws IOException {
+        try {
+            return decode(body.charStream());
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Decode records from a reader on calling thread.
+     *
+     * @return number of decoded records
+     */
+    public int decode(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        reader.setLenient(true);
+
+        if (arrayField != null && !moveToField(reader, arrayField)) {
+            return 0;
+        }
+
+        List<T> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            T record = adapter.read(reader);
+            if (record == null) {
+                continue;
+            }
+            batch.add(record);
+            count++;
+            if (batch.size() == batchSize) {
+                sink.onBatch(batch);
+                batch.clear();
+            }
+        }
+        reader.endArray();
+
+        if (!batch.isEmpty()) {
+            sink.onBatch(batch);
+        }
+        return count;
+    }
+
+    /**
+     * Skip fields of top level object until given field.
+     *
+     * @return false if object has no such field or it is null
+     */
+    private static boolean moveToField(JsonReader reader, String field) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (field.equals(reader.nextName())) {
+                return reader.peek() == JsonToken.BEGIN_ARRAY;
+            }
+            reader.skipValue();
+        }
+        return false;
+    }
+
+    private static synchronized void post(Runnable runnable) {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        mainHandler.post(runnable);
+    }
+
+    /**
+     * Receives decoded records in batches, on the decoding thread. Batch list is
+     * reused after the call returns.
+     */
+    public interface Sink<T> {
+        void onBatch(List<T> batch);
+    }
+}
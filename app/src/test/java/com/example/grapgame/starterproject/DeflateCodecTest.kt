@@ -0,0 +1,29 @@
+package com.example.grapgame.starterproject
+
+import com.example.grapgame.starterproject.db.core.DeflateCodec
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.zip.Deflater
+
+class DeflateCodecTest {
+
+    private val samples = (0 until 200).map { """{"title":"item $it","tags":["news","sports"],"author":{"name":"user $it"}}""" }
+    private val value = samples.take(5).joinToString(",", "[", "]")
+
+    @Test
+    fun valuesOfEarlierDictionaryStayReadable() {
+        val old = DeflateCodec(11, DeflateCodec.buildDictionary(samples, 1024), Deflater.DEFAULT_COMPRESSION)
+        val encoded = old.encode(value)!!
+
+        val retrained = DeflateCodec(12, DeflateCodec.buildDictionary(samples.reversed(), 512), Deflater.DEFAULT_COMPRESSION)
+
+        assertEquals(value, retrained.decode(encoded))
+        assertEquals(value, DeflateCodec().decode(encoded))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun idCanNotBeReusedForAnotherDictionary() {
+        DeflateCodec.registerDictionary(13, byteArrayOf(1, 2, 3))
+        DeflateCodec.registerDictionary(13, byteArrayOf(3, 2, 1))
+    }
+}
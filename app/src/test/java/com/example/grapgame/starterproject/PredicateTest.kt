@@ -0,0 +1,31 @@
+package com.example.grapgame.starterproject
+
+import com.example.grapgame.starterproject.db.core.Predicate
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class PredicateTest {
+
+    private fun feed(key: String, keys: List<String>) = Predicate.and(
+            Predicate.eq("key", key),
+            Predicate.or(Predicate.isNull("value"), Predicate.`in`("key", keys)))
+
+    @Test
+    fun sameShapeReusesCachedSql() {
+        val first = feed("a", listOf("b", "c"))
+        val second = feed("d", listOf("e", "f"))
+
+        assertEquals("(key = ? AND (value IS NULL OR key IN (?, ?)))", first.toSql())
+        assertSame(first.toSql(), second.toSql())
+        assertArrayEquals(arrayOf("d", "e", "f"), second.args)
+    }
+
+    @Test
+    fun differentShapesCompileSeparately() {
+        assertNotEquals(feed("a", listOf("b")).toSql(), feed("a", listOf("b", "c")).toSql())
+        assertNotEquals(Predicate.gt("key", 1).toSql(), Predicate.lt("key", 1).toSql())
+    }
+}
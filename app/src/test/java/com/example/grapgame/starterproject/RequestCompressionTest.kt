@@ -0,0 +1,143 @@
+package com.example.grapgame.starterproject
+
+import com.example.grapgame.starterproject.services.core.CompressionInterceptor
+import com.example.grapgame.starterproject.services.core.NetworkMetrics
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okio.Buffer
+import okio.GzipSource
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.zip.Inflater
+
+/**
+ * Runs [CompressionInterceptor] against a local mock server and checks bytes on the wire.
+ */
+class RequestCompressionTest {
+
+    private val server = MockWebServer()
+    private val metrics = NetworkMetrics()
+    private val client = OkHttpClient.Builder()
+            .addInterceptor(CompressionInterceptor(metrics, CompressionInterceptor.CpuClock { System.nanoTime() }))
+            .eventListenerFactory(metrics)
+            .build()
+
+    private val json = (0 until 500).joinToString(",", "[", "]") { """{"key":"key$it","value":"value of $it"}""" }
+
+    @Before
+    fun setUp() {
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun gzipsDeclaredRequestBodies() {
+        server.enqueue(MockResponse())
+
+        client.newCall(upload(json)).execute().close()
+
+        val recorded = server.takeRequest()
+        assertEquals("gzip", recorded.getHeader("Content-Encoding"))
+        assertNull(recorded.getHeader(CompressionInterceptor.COMPRESS))
+        assertEquals(json, Buffer().apply { writeAll(GzipSource(recorded.body)) }.readUtf8())
+
+        val endpoint = endpoint("POST", "/upload")
+        assertEquals(json.length.toLong(), endpoint.uncompressedRequestBytes.max)
+        assertTrue(endpoint.requestBytes.max < json.length / 4)
+    }
+
+    @Test
+    fun deflatesRawBytesWithPresetDictionary() {
+        val dictionary = """{"key":"key","value":"value of """.toByteArray()
+        val binary = ByteArray(4096) { (it % 256).toByte() }
+        val compressing = OkHttpClient.Builder()
+                .addInterceptor(CompressionInterceptor(metrics, CompressionInterceptor.CpuClock { System.nanoTime() })
+                        .apply { setDictionary(7, dictionary) })
+                .build()
+        server.enqueue(MockResponse())
+
+        compressing.newCall(Request.Builder()
+                .url(server.url("/upload"))
+                .header(CompressionInterceptor.COMPRESS, CompressionInterceptor.DEFLATE_DICTIONARY)
+                .post(RequestBody.create(MediaType.parse("application/octet-stream"), binary))
+                .build()).execute().close()
+
+        val recorded = server.takeRequest()
+        assertEquals("x-deflate-dict", recorded.getHeader("Content-Encoding"))
+        assertEquals("7", recorded.getHeader(CompressionInterceptor.DICTIONARY_ID))
+        val inflater = Inflater()
+        inflater.setInput(recorded.body.readByteArray())
+        val inflated = ByteArray(binary.size)
+        assertEquals(0, inflater.inflate(inflated))
+        assertTrue(inflater.needsDictionary())
+        inflater.setDictionary(dictionary)
+        assertEquals(binary.size, inflater.inflate(inflated))
+        assertTrue(inflater.finished())
+        assertArrayEquals(binary, inflated)
+    }
+
+    @Test
+    fun sendsSmallBodiesAsTheyAre() {
+        server.enqueue(MockResponse())
+
+        client.newCall(upload("""{"key":"a"}""")).execute().close()
+
+        assertNull(server.takeRequest().getHeader("Content-Encoding"))
+    }
+
+    @Test
+    fun fallsBackToPlainBodiesWhenServerRejectsCompression() {
+        server.enqueue(MockResponse().setResponseCode(415))
+        server.enqueue(MockResponse())
+        server.enqueue(MockResponse())
+
+        assertEquals(200, client.newCall(upload(json)).execute().code())
+        client.newCall(upload(json)).execute().close()
+
+        assertEquals("gzip", server.takeRequest().getHeader("Content-Encoding"))
+        val retried = server.takeRequest()
+        assertNull(retried.getHeader("Content-Encoding"))
+        assertEquals(json, retried.body.readUtf8())
+        assertNull(server.takeRequest().getHeader("Content-Encoding"))
+    }
+
+    @Test
+    fun measuresCompressedResponses() {
+        val gzipped = Buffer().apply {
+            val gzip = okio.Okio.buffer(okio.GzipSink(this))
+            gzip.writeUtf8(json)
+            gzip.close()
+        }
+        server.enqueue(MockResponse().setHeader("Content-Encoding", "gzip").setBody(gzipped))
+
+        val response = client.newCall(Request.Builder().url(server.url("/feed")).build()).execute()
+        assertEquals(json, response.body()!!.string())
+
+        assertTrue(server.takeRequest().getHeader("Accept-Encoding")!!.contains("gzip"))
+        val endpoint = endpoint("GET", "/feed")
+        assertEquals(json.length.toLong(), endpoint.decodedResponseBytes.max)
+        assertTrue(endpoint.responseBytes.max < json.length / 4)
+    }
+
+    private fun upload(body: String) = Request.Builder()
+            .url(server.url("/upload"))
+            .header(CompressionInterceptor.COMPRESS, CompressionInterceptor.GZIP)
+            .post(RequestBody.create(MediaType.parse("application/json"), body))
+            .build()
+
+    private fun endpoint(method: String, path: String) =
+            metrics.endpoints.getValue("$method ${server.url("/").host()}$path")
+}
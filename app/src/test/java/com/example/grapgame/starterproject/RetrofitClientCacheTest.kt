@@ -0,0 +1,74 @@
+package com.example.grapgame.starterproject
+
+import com.example.grapgame.starterproject.services.core.CachePolicy
+import com.example.grapgame.starterproject.services.core.RetrofitClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.BeforeClass
+import org.junit.Test
+
+/**
+ * Runs calls through the client of [RetrofitClient], with the disk cache given by init,
+ * against a local mock server.
+ */
+class RetrofitClientCacheTest {
+
+    private val server = MockWebServer()
+
+    @Before
+    fun setUp() {
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun freshResponseIsServedFromCache() {
+        server.enqueue(MockResponse().setBody("feed"))
+        val hits = RetrofitClient.getCacheStats().hits
+
+        assertEquals("feed", get("/feed", maxAgeSeconds = 60))
+        assertEquals("feed", get("/feed", maxAgeSeconds = 60))
+
+        assertEquals(1, server.requestCount)
+        assertEquals(hits + 1, RetrofitClient.getCacheStats().hits)
+    }
+
+    @Test
+    fun staleResponseIsRevalidated() {
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("profile"))
+        server.enqueue(MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""))
+        val revalidations = RetrofitClient.getCacheStats().revalidations
+
+        assertEquals("profile", get("/profile", maxAgeSeconds = 0))
+        assertEquals("profile", get("/profile", maxAgeSeconds = 0))
+
+        assertNull(server.takeRequest().getHeader("If-None-Match"))
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"))
+        assertEquals(revalidations + 1, RetrofitClient.getCacheStats().revalidations)
+    }
+
+    private fun get(path: String, maxAgeSeconds: Int): String {
+        val request = Request.Builder()
+                .url(server.url(path))
+                .header(CachePolicy.MAX_AGE, maxAgeSeconds.toString())
+                .build()
+        return RetrofitClient.getHttpClient().newCall(request).execute().use { it.body()!!.string() }
+    }
+
+    companion object {
+        @BeforeClass
+        @JvmStatic
+        fun initCache() {
+            RetrofitClient.init(createTempDir("http-cache"), 1024 * 1024)
+        }
+    }
+}
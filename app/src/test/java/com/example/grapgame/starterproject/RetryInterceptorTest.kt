@@ -0,0 +1,123 @@
+package com.example.grapgame.starterproject
+
+import com.example.grapgame.starterproject.services.core.CircuitBreaker
+import com.example.grapgame.starterproject.services.core.CircuitOpenException
+import com.example.grapgame.starterproject.services.core.RetryInterceptor
+import com.example.grapgame.starterproject.services.core.RetryPolicy
+import okhttp3.FormBody
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs [RetryInterceptor] against a local mock server injecting failures and latency.
+ */
+class RetryInterceptorTest {
+
+    private val server = MockWebServer()
+    private val retry = RetryInterceptor(2000, 2, 10, 3, 60000)
+    private val client = OkHttpClient.Builder().addInterceptor(retry).retryOnConnectionFailure(false).build()
+
+    @Before
+    fun setUp() {
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun retriesServerErrorsOfIdempotentCalls() {
+        server.enqueue(MockResponse().setResponseCode(503))
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST))
+        server.enqueue(MockResponse().setBody("ok"))
+
+        val response = client.newCall(get()).execute()
+
+        assertEquals("ok", response.body()!!.string())
+        assertEquals(3, server.requestCount)
+        assertEquals(2, retry.retries)
+    }
+
+    @Test
+    fun doesNotRetryPostUnlessIdempotent() {
+        server.enqueue(MockResponse().setResponseCode(503))
+        server.enqueue(MockResponse().setResponseCode(503))
+        server.enqueue(MockResponse().setBody("ok"))
+
+        val post = Request.Builder().url(server.url("/login")).post(FormBody.Builder().add("id", "1").build())
+        assertEquals(503, client.newCall(post.build()).execute().code())
+        assertEquals(1, server.requestCount)
+
+        val idempotent = post.header(RetryPolicy.IDEMPOTENT, "true").build()
+        assertEquals(200, client.newCall(idempotent).execute().code())
+        assertEquals(3, server.requestCount)
+        assertEquals(null, server.takeRequest().getHeader(RetryPolicy.IDEMPOTENT))
+    }
+
+    @Test
+    fun deadlineBoundsSlowCalls() {
+        server.enqueue(MockResponse().setBody("late").setHeadersDelay(5, TimeUnit.SECONDS))
+
+        val request = get().newBuilder().header(RetryPolicy.DEADLINE, "300").build()
+        val start = System.nanoTime()
+        try {
+            client.newCall(request).execute()
+            fail()
+        } catch (expected: InterruptedIOException) {
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000)
+    }
+
+    @Test
+    fun deadlineBoundsWholeCallIncludingBody() {
+        // Every read finishes well within the read timeout, only an overall deadline stops it.
+        server.enqueue(MockResponse().setBody("x".repeat(50)).throttleBody(1, 100, TimeUnit.MILLISECONDS))
+
+        val request = get().newBuilder().header(RetryPolicy.DEADLINE, "500").build()
+        val start = System.nanoTime()
+        try {
+            client.newCall(request).execute().body()!!.string()
+            fail()
+        } catch (expected: IOException) {
+        }
+        val elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        assertTrue("took ${elapsed}ms", elapsed < 500 + SLACK_MILLIS)
+    }
+
+    @Test
+    fun openCircuitRejectsCalls() {
+        repeat(3) { server.enqueue(MockResponse().setResponseCode(500)) }
+        val request = get().newBuilder().header(RetryPolicy.MAX_RETRIES, "0").build()
+
+        repeat(3) { assertEquals(500, client.newCall(request).execute().code()) }
+        try {
+            client.newCall(request).execute()
+            fail()
+        } catch (expected: CircuitOpenException) {
+        }
+
+        assertEquals(3, server.requestCount)
+        assertEquals(CircuitBreaker.State.OPEN, retry.breakers[server.hostName]!!.state)
+        assertEquals(1, retry.rejected)
+    }
+
+    private fun get() = Request.Builder().url(server.url("/feed")).build()
+
+    companion object {
+        private const val SLACK_MILLIS = 250
+    }
+}
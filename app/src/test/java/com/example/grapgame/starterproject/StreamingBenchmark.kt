@@ -0,0 +1,99 @@
+package com.example.grapgame.starterproject
+
+import com.example.grapgame.starterproject.models.FeedModel
+import com.example.grapgame.starterproject.models.FeedModelAdapter
+import com.example.grapgame.starterproject.services.core.StreamingService
+import com.google.gson.JsonParser
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.ResponseBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.util.concurrent.TimeUnit
+
+/**
+ * Downloads a `{"data": [...]}` feed from a local mock server, throttled to a mobile-like
+ * bandwidth, and decodes it with [StreamingService] against reading the whole body as a
+ * String and parsing it afterwards, as the scalars converter did. Wall time and bytes
+ * allocated by the decoding thread are printed per round.
+ */
+class StreamingBenchmark {
+
+    private val server = MockWebServer()
+    private val client = OkHttpClient.Builder().build()
+    private val adapter = FeedModelAdapter()
+    private val json = (0 until RECORDS).joinToString(",", """{"meta":{"page":1},"data":[""", "]}") {
+        """{"key":"key$it","value":{"title":"item $it","score":${it * 0.5},"tags":["news","sports"]}}"""
+    }
+
+    @Before
+    fun setUp() {
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun streamingAgainstBuffered() {
+        repeat(ROUNDS) { round ->
+            val streamed = measure("streaming", round) { body ->
+                var count = 0
+                StreamingService(adapter, "data", StreamingService.Sink<FeedModel> { count += it.size }).decode(body)
+                count
+            }
+            val buffered = measure("buffered", round) { body ->
+                var count = 0
+                val sink = StreamingService.Sink<FeedModel> { count += it.size }
+                val batch = ArrayList<FeedModel>(BATCH_SIZE)
+                JsonParser().parse(body.string()).asJsonObject.getAsJsonArray("data").forEach {
+                    batch.add(adapter.fromJsonTree(it))
+                    if (batch.size == BATCH_SIZE) {
+                        sink.onBatch(batch)
+                        batch.clear()
+                    }
+                }
+                sink.onBatch(batch)
+                count
+            }
+            assertEquals(RECORDS, streamed)
+            assertEquals(RECORDS, buffered)
+        }
+    }
+
+    private fun measure(name: String, round: Int, decode: (ResponseBody) -> Int): Int {
+        server.enqueue(MockResponse()
+                .setBody(json)
+                .throttleBody(BYTES_PER_PERIOD, PERIOD_MILLIS, TimeUnit.MILLISECONDS))
+        val request = Request.Builder().url(server.url("/feed")).build()
+
+        val allocatedBefore = allocatedBytes()
+        val start = System.nanoTime()
+        val count = client.newCall(request).execute().body()!!.use { decode(it) }
+        val millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        val allocated = allocatedBytes() - allocatedBefore
+
+        println("$name round[$round] ${millis}ms allocated[${allocated / 1024} KB] records[$count] body[${json.length / 1024} KB]")
+        return count
+    }
+
+    private fun allocatedBytes(): Long {
+        val threads = ManagementFactory.getThreadMXBean()
+        return if (threads is com.sun.management.ThreadMXBean) threads.getThreadAllocatedBytes(Thread.currentThread().id) else 0
+    }
+
+    companion object {
+        private const val RECORDS = 20000
+        private const val ROUNDS = 3
+        private const val BATCH_SIZE = 200
+        private const val BYTES_PER_PERIOD = 64L * 1024
+        private const val PERIOD_MILLIS = 10L
+    }
+}